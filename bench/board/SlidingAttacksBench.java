@@ -0,0 +1,76 @@
+package board;
+
+import java.util.Random;
+
+import utils.Commons;
+
+/**
+ * Compares the magic and compress lookups in SlidingAttacks with the old
+ * loop over the blockers. The compress lookup uses Long.compress where the
+ * JDK has it, else the compressLoop fallback, the name it is reported under
+ * says which. Run it with "ant bench".
+ */
+
+public class SlidingAttacksBench {
+
+	private static final int POSITIONS = 4096;
+	private static final int ROUNDS = 200;
+
+	private interface Attacks {
+		long get(int square, long occupied);
+	}
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		long[] occupied = new long[POSITIONS];
+		int[] squares = new int[POSITIONS];
+
+		// Roughly as full as a board in the middlegame
+		for (int i = 0; i < POSITIONS; i++) {
+			occupied[i] = random.nextLong() & random.nextLong();
+			squares[i] = random.nextInt(64);
+		}
+
+		Attacks loop = (square, occ) -> SlidingAttacks.getLoopAttacks(
+				Commons.PieceType.QUEEN, square, occ);
+		Attacks magic = (square, occ) -> SlidingAttacks.getQueenAttacks(
+				square, occ);
+		Attacks compress = (square, occ) -> SlidingAttacks
+				.getRookAttacksCompress(square, occ)
+				| SlidingAttacks.getBishopAttacksCompress(square, occ);
+
+		// Warm up so everything is compiled before measuring
+		for (int i = 0; i < 5; i++) {
+			run(loop, squares, occupied);
+			run(magic, squares, occupied);
+			run(compress, squares, occupied);
+		}
+
+		report("loop", loop, squares, occupied);
+		report("magic", magic, squares, occupied);
+		String name = SlidingAttacks.isLongCompressPresent()
+				? "compress (Long.compress)" : "compress (loop fallback)";
+		report(name, compress, squares, occupied);
+	}
+
+	private static void report(String name, Attacks attacks, int[] squares,
+			long[] occupied) {
+		long time = System.nanoTime();
+		long sum = run(attacks, squares, occupied);
+		time = System.nanoTime() - time;
+
+		System.out.printf("%-26s %6.2f ns/op (%d)%n", name, (double) time
+				/ ((long) ROUNDS * POSITIONS), sum);
+	}
+
+	private static long run(Attacks attacks, int[] squares, long[] occupied) {
+		long sum = 0;
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int i = 0; i < POSITIONS; i++) {
+				sum += attacks.get(squares[i], occupied[i]);
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,134 @@
+package board;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import utils.Commons;
+
+/**
+ * JMH benchmarks of the Board methods the move generator is built on, over
+ * the positions in Perft.POSITIONS. Every benchmark goes through all the
+ * pieces, squares or moves of the side to move once, so the numbers are per
+ * position and not per call. Run it with "ant jmh", the results are written
+ * as JSON so runs on two commits can be compared.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	@Param({ "start", "kiwipete", "position3", "position4", "position5",
+			"position6" })
+	public String position;
+
+	private long[][] board;
+	private long[][] scratch;
+	private int side;
+	private long occupied;
+	private MoveList moves;
+	private MoveList generated;
+
+	// The squares of the pieces of the side to move and their types
+	private int[] squares;
+	private int[] types;
+
+	@Setup
+	public void setUp() {
+		board = new long[2][7];
+		scratch = new long[2][7];
+		moves = new MoveList();
+		generated = new MoveList();
+
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			if (entry.name.equals(position)) {
+				side = Fen.parse(entry.fen, board);
+			}
+		}
+		occupied = Board.getBitMap(board);
+
+		long own = Board.getBitMapForColor(board, side);
+		squares = new int[Long.bitCount(own)];
+		types = new int[squares.length];
+		for (int i = 0; own != 0; own &= (own - 1), i++) {
+			squares[i] = Long.numberOfTrailingZeros(own);
+			types[i] = Board.getPieceAtSquare(board, squares[i], side);
+		}
+
+		Board.getValidMovesForColor(side, board, moves);
+	}
+
+	@Benchmark
+	public long getPieceAttacks() {
+		long attacks = 0;
+		for (int i = 0; i < squares.length; i++) {
+			if (types[i] != Commons.PieceType.PAWN) {
+				attacks |= Board.getPieceAttacks(types[i], squares[i],
+						occupied);
+			}
+		}
+		return attacks;
+	}
+
+	@Benchmark
+	public int isAttacked() {
+		int attacked = 0;
+		for (int square = 0; square < 64; square++) {
+			if (Board.isAttacked(square, side, board)) {
+				attacked++;
+			}
+		}
+		return attacked;
+	}
+
+	@Benchmark
+	public long getPawnAttacksAndMoves() {
+		long moves = 0;
+		for (int i = 0; i < squares.length; i++) {
+			if (types[i] == Commons.PieceType.PAWN) {
+				moves |= Board.getPawnAttacksAndMoves(squares[i], side, board);
+			}
+		}
+		return moves;
+	}
+
+	@Benchmark
+	public int getValidMovesForColor() {
+		generated.clear();
+		return Board.getValidMovesForColor(side, board, generated);
+	}
+
+	/**
+	 * Every move is made on a copy of the board, so this includes one
+	 * copyBoard per move.
+	 */
+
+	@Benchmark
+	public void move(Blackhole blackhole) {
+		for (int i = 0; i < moves.size(); i++) {
+			Board.copyBoard(board, scratch);
+			blackhole.consume(Board.move(moves.get(i), side, scratch));
+		}
+	}
+
+	@Benchmark
+	public long[][] deepCopy2DArray() {
+		return Board.deepCopy2DArray(board);
+	}
+
+}
@@ -0,0 +1,137 @@
+package board;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utils.Commons;
+
+/**
+ * JMH benchmarks of the queries of PositionBatch, with and without the vector
+ * API, against calling Board and MoveGenerator for every position on its
+ * own long[2][7] board. The numbers are per position. The vector path is
+ * only there when PositionBatchVectors was built, run it with
+ * "ant jmh -Dvectors=true -Djmh.include=PositionBatchBenchmark".
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PositionBatchBenchmark {
+
+	private static final int POSITIONS = 4096;
+
+	@Param({ "board", "scalar", "vector" })
+	public String path;
+
+	private PositionBatch batch;
+	private long[][][] boards;
+	private int[] sides;
+	private long[] out;
+	private boolean[] checks;
+
+	@Setup
+	public void setUp() {
+		batch = fill();
+		boards = new long[POSITIONS][2][7];
+		sides = new int[POSITIONS];
+		for (int i = 0; i < POSITIONS; i++) {
+			sides[i] = batch.get(i, boards[i]);
+		}
+		out = new long[POSITIONS];
+		checks = new boolean[POSITIONS];
+
+		batch.setUseVectors(path.equals("vector"));
+		if (path.equals("vector") && !batch.isUseVectors()) {
+			throw new IllegalStateException(
+					"No vector API, build with -Dvectors=true");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POSITIONS)
+	public long[] getOccupancy() {
+		if (path.equals("board")) {
+			for (int i = 0; i < POSITIONS; i++) {
+				out[i] = Board.getBitMap(boards[i]);
+			}
+		} else {
+			batch.getOccupancy(out);
+		}
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POSITIONS)
+	public long[] getAttackedSquares() {
+		if (path.equals("board")) {
+			for (int i = 0; i < POSITIONS; i++) {
+				out[i] = MoveGenerator.getAttackedSquares(Commons.Color.WHITE,
+						boards[i][Commons.Color.WHITE],
+						Board.getBitMap(boards[i]));
+			}
+		} else {
+			batch.getAttackedSquares(Commons.Color.WHITE, out);
+		}
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POSITIONS)
+	public boolean[] isInCheck() {
+		if (path.equals("board")) {
+			for (int i = 0; i < POSITIONS; i++) {
+				int king = Long.numberOfTrailingZeros(
+						boards[i][sides[i]][Commons.PieceType.KING]);
+				checks[i] = Board.isAttacked(king, sides[i], boards[i]);
+			}
+		} else {
+			batch.isInCheck(checks);
+		}
+		return checks;
+	}
+
+	/**
+	 * The perft positions and the ones reached from them by random moves.
+	 */
+
+	private static PositionBatch fill() {
+		Random random = new Random(42);
+		PositionBatch batch = new PositionBatch(POSITIONS);
+		MoveList moves = new MoveList();
+
+		for (int i = 0; batch.size() < POSITIONS; i++) {
+			long[][] board = new long[2][7];
+			int side = Fen.parse(Perft.POSITIONS[i % Perft.POSITIONS.length].fen,
+					board);
+			UndoStack undo = new UndoStack();
+			for (int ply = 0; ply < 60 && batch.size() < POSITIONS; ply++) {
+				batch.add(board, side);
+				moves.clear();
+				if (Board.getValidMovesForColor(side, board, moves) == 0) {
+					break;
+				}
+				Board.makeMove(moves.get(random.nextInt(moves.size())), side,
+						board, undo);
+				side = Board.oppositeSide(side);
+			}
+		}
+		return batch;
+	}
+
+}
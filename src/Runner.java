@@ -1,12 +1,162 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 import board.Board;
+import board.EpdBatch;
+import board.Fen;
+import board.Move;
+import board.ParallelPerft;
+import board.Perft;
+import board.Position;
+import pgn.PgnImporter;
+import search.LazySmp;
+import search.Search;
 
 public class Runner {
 
-	public static void main(String[] args) {
-		long[][] board = Board.initBitBoard();
+	/**
+	 * Without arguments the start position is printed. To measure the move
+	 * generator use one of
+	 * 
+	 * perft <depth> [fen]
+	 * divide <depth> [fen]
+	 * suite [max depth]
+	 * parallel <depth> [max threads] [cache MB] [fen]
+	 * 
+	 * and to analyze a file of positions
+	 * 
+	 * epd <input> <output> [threads]
+	 * pgn <input> [threads]
+	 * 
+	 * and to search a position
+	 * 
+	 * search <depth> [fen]
+	 * smp <depth> [max threads] [table MB] [fen]
+	 */
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			long[][] board = Board.initBitBoard();
+
+			System.out.println(Board.getString(Board.getBitMap(board)));
+			return;
+		}
+
+		switch (args[0]) {
+		case "perft":
+		case "divide": {
+			int depth = Integer.parseInt(args[1]);
+			long[][] board = new long[2][7];
+			int side = Fen.parse(getFen(args, 2), board);
+
+			long time = System.nanoTime();
+			long nodes;
+			if (args[0].equals("divide")) {
+				nodes = Perft.divide(board, side, depth, System.out);
+			} else {
+				nodes = Perft.perft(board, side, depth);
+				System.out.println("Nodes: " + nodes);
+			}
+			time = System.nanoTime() - time;
+
+			System.out.printf("Time: %d ms, %d nps%n", time / 1000000,
+					Perft.nodesPerSecond(nodes, time));
+			break;
+		}
+
+		case "suite": {
+			int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+			if (!Perft.runSuite(depth, System.out)) {
+				System.exit(1);
+			}
+			break;
+		}
+
+		case "parallel": {
+			int depth = Integer.parseInt(args[1]);
+			int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime
+					.getRuntime().availableProcessors();
+			int cache = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+			long[][] board = new long[2][7];
+			int side = Fen.parse(getFen(args, 4), board);
+
+			if (!ParallelPerft.runScaling(board, side, depth, threads, cache,
+					System.out)) {
+				System.exit(1);
+			}
+			break;
+		}
+
+		case "epd": {
+			int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime
+					.getRuntime().availableProcessors();
+			EpdBatch.run(Paths.get(args[1]), Paths.get(args[2]), threads,
+					System.out);
+			break;
+		}
+
+		case "pgn": {
+			int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime
+					.getRuntime().availableProcessors();
+			PgnImporter.Listener listener = new PgnImporter.Listener() {
+				public void gameReplayed(long number, long[][] board,
+						int side, int plies) {
+				}
+
+				public void gameFailed(long number, String error) {
+					System.err.println("Game " + (number + 1) + ": " + error);
+				}
+			};
+			new PgnImporter(threads).run(Files.newBufferedReader(
+					Paths.get(args[1]), StandardCharsets.ISO_8859_1), listener,
+					System.out);
+			break;
+		}
+
+		case "search": {
+			long[][] board = new long[2][7];
+			int side = Fen.parse(getFen(args, 2), board);
+			Search search = new Search(new Position(board, side));
+			search.setMaxDepth(Integer.parseInt(args[1]));
+
+			int move = search.search(System.out);
+			System.out.println("bestmove "
+					+ (move == 0 ? "none" : Move.toAlgebraic(move)));
+			break;
+		}
+
+		case "smp": {
+			int depth = Integer.parseInt(args[1]);
+			int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime
+					.getRuntime().availableProcessors();
+			int megabytes = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+			long[][] board = new long[2][7];
+			int side = Fen.parse(getFen(args, 4), board);
+
+			LazySmp.runScaling(board, side, depth, threads, megabytes,
+					System.out);
+			break;
+		}
+
+		default:
+			System.err.println("Unknown command " + args[0]);
+			System.exit(2);
+		}
+	}
 
-		System.out.println(Board.getString(Board.getBitMap(board)));
+	/**
+	 * The FEN is the rest of the arguments, so it does not have to be quoted.
+	 */
 
+	private static String getFen(String[] args, int from) {
+		if (args.length <= from) {
+			return Fen.START_POSITION;
+		}
+		return String.join(" ", Arrays.copyOfRange(args, from,
+				args.length));
 	}
 
 }
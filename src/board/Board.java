@@ -1,7 +1,6 @@
 package board;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -13,6 +12,10 @@ public class Board implements Serializable {
 
 	public static long[] masks;
 
+	static {
+		createMasks();
+	}
+
 	public Board() {
 		createMasks();
 	}
@@ -158,6 +161,38 @@ public class Board implements Serializable {
 		return str;
 	}
 
+	/**
+	 * Get the name of a square, square 0 is a8 and square 63 is h1.
+	 * 
+	 * @param square
+	 * @return the name of the square like "e4".
+	 */
+
+	public static String getSquareName(int square) {
+		return "" + (char) ('a' + square % 8) + (char) ('8' - square / 8);
+	}
+
+	/**
+	 * Get the square from its name.
+	 * 
+	 * @param name
+	 *            the name of the square like "e4"
+	 * @return the square index or -1 if it is not a valid name.
+	 */
+
+	public static int getSquareIndex(CharSequence name) {
+		if (name.length() != 2) {
+			return -1;
+		}
+
+		int file = name.charAt(0) - 'a';
+		int rank = name.charAt(1) - '1';
+		if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+			return -1;
+		}
+		return (7 - rank) * 8 + file;
+	}
+
 	/**
 	 * Set a piece of a type and color at a square
 	 * 
@@ -210,12 +245,8 @@ public class Board implements Serializable {
 	 */
 
 	public static long[][] removePieceAtSquare(long[][] board, int square) {
-		for (int i = 0; i < 6; i++) {
-			board[Commons.Color.BLACK][i] = board[Commons.Color.BLACK][i]
-					& ~masks[square];
-			board[Commons.Color.WHITE][i] = board[Commons.Color.WHITE][i]
-					& ~masks[square];
-		}
+		clearSquare(board[Commons.Color.BLACK], 0, square);
+		clearSquare(board[Commons.Color.WHITE], 0, square);
 		return board;
 	}
 
@@ -233,12 +264,7 @@ public class Board implements Serializable {
 	 */
 
 	public static int getPieceAtSquare(long[][] board, int square, int color) {
-		for (int i = 0; i < 6; i++) {
-			if ((board[color][i] & masks[square]) != 0) {
-				return i;
-			}
-		}
-		return -1;
+		return getTypeAtSquare(board[color], 0, square);
 	}
 
 	/**
@@ -271,14 +297,16 @@ public class Board implements Serializable {
 
 	public static long getPieceAttacks(int pieceType, int from,
 			long occupiedBitMap) {
-
-		long ts = Commons.Bitmaps.ATTACKMAP[pieceType][from];
-		for (long b = occupiedBitMap
-				& Commons.Bitmaps.BLOCKERMAP[pieceType][from]; b != 0; b &= (b - 1)) {
-			int sq = Long.numberOfTrailingZeros(b);
-			ts &= ~Commons.Bitmaps.BEHINDMAP[from][sq];
+		switch (pieceType) {
+		case Commons.PieceType.ROOK:
+			return SlidingAttacks.getRookAttacks(from, occupiedBitMap);
+		case Commons.PieceType.BISHOP:
+			return SlidingAttacks.getBishopAttacks(from, occupiedBitMap);
+		case Commons.PieceType.QUEEN:
+			return SlidingAttacks.getQueenAttacks(from, occupiedBitMap);
+		default:
+			return Commons.Bitmaps.ATTACKMAP[pieceType][from];
 		}
-		return ts;
 	}
 
 	/**
@@ -295,10 +323,25 @@ public class Board implements Serializable {
 
 	protected static long getPawnAttacksFrom(int square, int side,
 			long[][] board) {
-		return Commons.Bitmaps.PAWN_ATTACKS[side][square]
-				& board[oppositeSide(side)][6]
-				| Commons.Bitmaps.PAWN_ATTACKS[side][square]
-				& getBitMapForColor(board, oppositeSide(side));
+		return getPawnAttacksFrom(square, side, board,
+				getBitMapForColor(board, oppositeSide(side)));
+	}
+
+	protected static long getPawnAttacksFrom(int square, int side,
+			long[][] board, long enemyBitMap) {
+		return getPawnAttacksFrom(square, side, board[oppositeSide(side)], 0,
+				enemyBitMap);
+	}
+
+	/**
+	 * The en passant square is in the state row of the other side, its
+	 * bitmaps starting at an offset.
+	 */
+
+	private static long getPawnAttacksFrom(int square, int side, long[] them,
+			int t, long enemyBitMap) {
+		return Commons.Bitmaps.PAWN_ATTACKS[side][square] & them[t + 6]
+				| Commons.Bitmaps.PAWN_ATTACKS[side][square] & enemyBitMap;
 	}
 
 	/**
@@ -314,31 +357,100 @@ public class Board implements Serializable {
 	 */
 
 	public static boolean isAttacked(int square, int side, long[][] board) {
-		if (isAttackedByPawn(square, side, board)) {
-			return true;
-		}
+		return isAttacked(square, side, board, getBitMap(board));
+	}
 
-		if (isAttackedByKnight(square, side, board)) {
-			return true;
-		}
+	/**
+	 * Check if a square is under attack on a position, using the occupied
+	 * squares it keeps.
+	 */
 
-		if (isAttackedByKing(square, side, board)) {
-			return true;
-		}
+	public static boolean isAttacked(int square, int side, Position position) {
+		return isAttacked(square, side, position.getBoard(),
+				position.getBitMap());
+	}
 
-		if (isAttackedByRook(square, side, board)) {
-			return true;
-		}
+	/**
+	 * Check if a square is under attack when the occupied squares are
+	 * already known.
+	 * 
+	 * @param square
+	 *            the square to check.
+	 * @param side
+	 *            the color under attack.
+	 * @param board
+	 *            the board to check.
+	 * @param occupied
+	 *            the bitmap of the board, see getBitMap.
+	 * @return boolean if the square is under attack or not.
+	 */
 
-		if (isAttackedByQueen(square, side, board)) {
-			return true;
-		}
+	public static boolean isAttacked(int square, int side, long[][] board,
+			long occupied) {
+		return getAttackersTo(board, square, occupied, oppositeSide(side)) != 0;
+	}
 
-		if (isAttackedByBishop(square, side, board)) {
-			return true;
-		}
+	/**
+	 * Get the pieces of both colors attacking a square, all in one go. The
+	 * sliders are looked up from the square with the rooks and queens and
+	 * the bishops and queens together.
+	 * 
+	 * @param board
+	 *            the board to check.
+	 * @param square
+	 *            the square attacked.
+	 * @param occupied
+	 *            the squares sliders are blocked by. Pieces not on these
+	 *            squares still attack, and with x-rays.
+	 * @return a bitmap of the attackers.
+	 */
 
-		return false;
+	public static long getAttackersTo(long[][] board, int square,
+			long occupied) {
+		long[] black = board[Commons.Color.BLACK];
+		long[] white = board[Commons.Color.WHITE];
+		long rooks = black[Commons.PieceType.ROOK]
+				| white[Commons.PieceType.ROOK]
+				| black[Commons.PieceType.QUEEN]
+				| white[Commons.PieceType.QUEEN];
+		long bishops = black[Commons.PieceType.BISHOP]
+				| white[Commons.PieceType.BISHOP]
+				| black[Commons.PieceType.QUEEN]
+				| white[Commons.PieceType.QUEEN];
+
+		return (Commons.Bitmaps.PAWN_ATTACKS[Commons.Color.BLACK][square] & white[Commons.PieceType.PAWN])
+				| (Commons.Bitmaps.PAWN_ATTACKS[Commons.Color.WHITE][square] & black[Commons.PieceType.PAWN])
+				| (Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KNIGHT][square] & (black[Commons.PieceType.KNIGHT] | white[Commons.PieceType.KNIGHT]))
+				| (Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KING][square] & (black[Commons.PieceType.KING] | white[Commons.PieceType.KING]))
+				| (SlidingAttacks.getRookAttacks(square, occupied) & rooks)
+				| (SlidingAttacks.getBishopAttacks(square, occupied) & bishops);
+	}
+
+	/**
+	 * Get the pieces of one color attacking a square.
+	 * 
+	 * @param color
+	 *            the color of the attackers.
+	 * @return a bitmap of the attackers.
+	 */
+
+	public static long getAttackersTo(long[][] board, int square,
+			long occupied, int color) {
+		return getAttackersTo(board[color], 0, square, occupied, color);
+	}
+
+	/**
+	 * Get the pieces of one color attacking a square when its bitmaps start
+	 * at an offset in an array, see MoveGenerator.getAttackedSquares.
+	 */
+
+	static long getAttackersTo(long[] pieces, int offset, int square,
+			long occupied, int color) {
+		return (Commons.Bitmaps.PAWN_ATTACKS[oppositeSide(color)][square] & pieces[offset + Commons.PieceType.PAWN])
+				| (Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KNIGHT][square] & pieces[offset + Commons.PieceType.KNIGHT])
+				| (Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KING][square] & pieces[offset + Commons.PieceType.KING])
+				| (SlidingAttacks.getRookAttacks(square, occupied) & (pieces[offset + Commons.PieceType.ROOK] | pieces[offset + Commons.PieceType.QUEEN]))
+				| (SlidingAttacks.getBishopAttacks(square, occupied) & (pieces[offset + Commons.PieceType.BISHOP] | pieces[offset + Commons.PieceType.QUEEN]));
 	}
 
 	protected static boolean isAttackedByKnight(int square, int side,
@@ -358,37 +470,48 @@ public class Board implements Serializable {
 
 	protected static boolean isAttackedByRook(int square, int side,
 			long[][] board) {
-		long bitmap = Commons.Bitmaps.ATTACKMAP[Commons.PieceType.ROOK][square]
-				& board[oppositeSide(side)][Commons.PieceType.ROOK];
-		for (long b = bitmap; b != 0; b &= (b - 1)) {
-			int from = Long.numberOfTrailingZeros(b);
-			if ((Board.getBitMap(board) & Commons.Bitmaps.BETWEENMAP[from][square]) == 0) {
-				return true;
-			}
-		}
-		return false;
+		return isAttackedByRook(square, side, board, getBitMap(board));
+	}
+
+	protected static boolean isAttackedByRook(int square, int side,
+			long[][] board, long occupied) {
+		return isAttackedBySlider(Commons.PieceType.ROOK, square,
+				board[oppositeSide(side)], 0, occupied);
 	}
 
 	protected static boolean isAttackedByBishop(int square, int side,
 			long[][] board) {
-		long bitmap = Commons.Bitmaps.ATTACKMAP[Commons.PieceType.BISHOP][square]
-				& board[oppositeSide(side)][Commons.PieceType.BISHOP];
-		for (long b = bitmap; b != 0; b &= (b - 1)) {
-			int from = Long.numberOfTrailingZeros(b);
-			if ((Board.getBitMap(board) & Commons.Bitmaps.BETWEENMAP[from][square]) == 0) {
-				return true;
-			}
-		}
-		return false;
+		return isAttackedByBishop(square, side, board, getBitMap(board));
+	}
+
+	protected static boolean isAttackedByBishop(int square, int side,
+			long[][] board, long occupied) {
+		return isAttackedBySlider(Commons.PieceType.BISHOP, square,
+				board[oppositeSide(side)], 0, occupied);
 	}
 
 	protected static boolean isAttackedByQueen(int square, int side,
 			long[][] board) {
-		long bitmap = Commons.Bitmaps.ATTACKMAP[Commons.PieceType.QUEEN][square]
-				& board[oppositeSide(side)][Commons.PieceType.QUEEN];
+		return isAttackedByQueen(square, side, board, getBitMap(board));
+	}
+
+	protected static boolean isAttackedByQueen(int square, int side,
+			long[][] board, long occupied) {
+		return isAttackedBySlider(Commons.PieceType.QUEEN, square,
+				board[oppositeSide(side)], 0, occupied);
+	}
+
+	/**
+	 * Check if a slider of a type attacks a square with nothing in between,
+	 * the bitmaps of the attacking side starting at an offset.
+	 */
+
+	private static boolean isAttackedBySlider(int type, int square,
+			long[] them, int t, long occupied) {
+		long bitmap = Commons.Bitmaps.ATTACKMAP[type][square] & them[t + type];
 		for (long b = bitmap; b != 0; b &= (b - 1)) {
 			int from = Long.numberOfTrailingZeros(b);
-			if ((Board.getBitMap(board) & Commons.Bitmaps.BETWEENMAP[from][square]) == 0) {
+			if ((occupied & Commons.Bitmaps.BETWEENMAP[from][square]) == 0) {
 				return true;
 			}
 		}
@@ -423,8 +546,24 @@ public class Board implements Serializable {
 	 */
 
 	public static long getPawnMovesFrom(int square, int side, long[][] board) {
+		return getPawnMovesFrom(square, side, getBitMap(board));
+	}
+
+	/**
+	 * Get all pawn move from a square when the occupied squares are already
+	 * known.
+	 * 
+	 * @param square
+	 *            the square to check moves from
+	 * @param side
+	 *            the color of the pawn
+	 * @param occupied
+	 *            the bitmap of the board, see getBitMap.
+	 * @return a bitmap of the pawn
+	 */
+
+	public static long getPawnMovesFrom(int square, int side, long occupied) {
 		long bitmap = 0;
-		long occupied = getBitMap(board);
 
 		if ((masks[square] & Commons.Bitmaps.RANKS[0]) != 0) {
 			return bitmap;
@@ -474,6 +613,10 @@ public class Board implements Serializable {
 
 	}
 
+	protected static boolean isSquareOccupied(int square, Position position) {
+		return (masks[square] & position.getBitMap()) != 0;
+	}
+
 	/**
 	 * Get pawn attack and moves from a square
 	 * 
@@ -492,6 +635,13 @@ public class Board implements Serializable {
 				| getPawnMovesFrom(square, side, board);
 	}
 
+	public static long getPawnAttacksAndMoves(int square, int side,
+			Position position) {
+		return getPawnAttacksFrom(square, side, position.getBoard(),
+				position.getBitMapForColor(oppositeSide(side)))
+				| getPawnMovesFrom(square, side, position.getBitMap());
+	}
+
 	/**
 	 * Get all valid moves from a square
 	 * 
@@ -503,186 +653,157 @@ public class Board implements Serializable {
 
 	public static List<Move> getValidMovesForSquare(int square, int side,
 			long[][] board) {
-		
-		// TODO refactor
+		if (getPieceAtSquare(board, square, side) == -1) {
+			return null;
+		}
 
-		List<Move> moves = new ArrayList<>();
-		Move move = null;
-		long[][] moveBoard = null;
+		MoveList moves = new MoveList();
+		getValidMovesForSquare(square, side, board, moves);
+		return moves.toList(0);
+	}
 
-		int type = getPieceAtSquare(board, square, side);
-		long bitmap = 0;
-		int squareTo = -1;
+	public static List<Move> getValidMovesForColor(int side, long[][] board) {
+		MoveList moves = new MoveList();
+		getValidMovesForColor(side, board, moves);
+		return moves.toList(0);
+	}
 
-		if (type == -1) {
-			return null;
-		}
+	/**
+	 * Add all valid moves for a color to a move list. Nothing is allocated so
+	 * this is the one to use in hot code.
+	 * 
+	 * @param side
+	 *            the side to move
+	 * @param board
+	 *            the board to generate moves for
+	 * @param moves
+	 *            the list the moves are added to
+	 * @return the number of moves added
+	 */
 
-		switch (type) {
-		case Commons.PieceType.PAWN:
-			bitmap = getPawnAttacksAndMoves(square, side, board);
-
-			// Promotion
-			// White
-			if (side == Commons.Color.WHITE) {
-				if ((bitmap & Commons.Bitmaps.RANKS[7]) != 0) {
-					while (bitmap != 0) {
-						moveBoard = deepCopy2DArray(board);
-						squareTo = Long.numberOfTrailingZeros(bitmap);
-						move = new Move(square, squareTo,
-								Commons.PieceType.ROOK);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-						move = new Move(square, squareTo,
-								Commons.PieceType.QUEEN);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-						move = new Move(square, squareTo,
-								Commons.PieceType.KNIGHT);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-						move = new Move(square, squareTo,
-								Commons.PieceType.BISHOP);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-
-						bitmap &= (bitmap - 1);
-					}
-
-					return moves;
-				}
-			} else {
-				// Black
-				if ((bitmap & Commons.Bitmaps.RANKS[0]) != 0) {
-					while (bitmap != 0) {
-						moveBoard = deepCopy2DArray(board);
-						squareTo = Long.numberOfTrailingZeros(bitmap);
-						move = new Move(square, squareTo,
-								Commons.PieceType.ROOK);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-						move = new Move(square, squareTo,
-								Commons.PieceType.QUEEN);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-						move = new Move(square, squareTo,
-								Commons.PieceType.KNIGHT);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-						move = new Move(square, squareTo,
-								Commons.PieceType.BISHOP);
-						moveBoard = move(move, side, moveBoard);
-						if (!isAttacked(getKingIndex(side, moveBoard), side,
-								moveBoard)) {
-							moves.add(move);
-						}
-
-						bitmap &= (bitmap - 1);
-					}
-
-					return moves;
-				}
-			}
+	public static int getValidMovesForColor(int side, long[][] board,
+			MoveList moves) {
+		return MoveGenerator.generate(side, board, -1L, moves);
+	}
 
-			break;
+	/**
+	 * Add all valid moves for a color to a move list, using the occupied
+	 * squares the position keeps.
+	 * 
+	 * @return the number of moves added
+	 */
 
-		case Commons.PieceType.KING:
-			bitmap = getPieceAttacks(type, square, getBitMap(board))
-					& ~getBitMapForColor(board, side);
-
-			// Check if king has moved
-			if ((board[side][Commons.PieceType.KING] & board[side][6]) != 0) {
-				if (side == Commons.Color.WHITE) {
-					// Check if rook has moved
-					if ((masks[56] & board[side][6]) != 0) {
-						if ((Commons.Bitmaps.BETWEENMAP[56][60] & getBitMap(board)) == 0) {
-							moves.add(new Move(60, 57, Commons.PieceType.KING,
-									new Move(56, 58, Commons.PieceType.ROOK)));
-						}
-					}
-
-					if ((masks[63] & board[side][6]) != 0) {
-						if ((Commons.Bitmaps.BETWEENMAP[60][63] & getBitMap(board)) == 0) {
-							moves.add(new Move(60, 62, Commons.PieceType.KING,
-									new Move(63, 61, Commons.PieceType.ROOK)));
-						}
-					}
-				} else {
-
-					// Check if rook has moved
-					if ((masks[0] & board[side][6]) != 0) {
-						if ((Commons.Bitmaps.BETWEENMAP[0][4] & getBitMap(board)) == 0) {
-							moves.add(new Move(4, 1, Commons.PieceType.KING,
-									new Move(0, 2, Commons.PieceType.ROOK)));
-						}
-					}
-
-					if ((masks[7] & board[side][6]) != 0) {
-						if ((Commons.Bitmaps.BETWEENMAP[4][7] & getBitMap(board)) == 0) {
-							moves.add(new Move(4, 6, Commons.PieceType.KING,
-									new Move(7, 5, Commons.PieceType.ROOK)));
-						}
-					}
-				}
+	public static int getValidMovesForColor(int side, Position position,
+			MoveList moves) {
+		return MoveGenerator.generate(side, position.getBoard(),
+				position.getBitMapForColor(side),
+				position.getBitMapForColor(oppositeSide(side)), -1L, moves);
+	}
 
-			}
+	/**
+	 * Add the valid captures and promotions for a color to a move list.
+	 * 
+	 * @return the number of moves added
+	 */
 
-			break;
+	public static int getCapturesForColor(int side, Position position,
+			MoveList moves) {
+		return MoveGenerator.generate(side, position.getBoard(),
+				position.getBitMapForColor(side),
+				position.getBitMapForColor(oppositeSide(side)), -1L,
+				MoveGenerator.CAPTURES, moves);
+	}
 
-		default:
-			bitmap = getPieceAttacks(type, square, getBitMap(board))
-					& ~getBitMapForColor(board, side);
-		}
+	/**
+	 * Add the valid moves for a color that are not captures or promotions to
+	 * a move list.
+	 * 
+	 * @return the number of moves added
+	 */
 
-		while (bitmap != 0) {
-			moveBoard = deepCopy2DArray(board);
-			squareTo = Long.numberOfTrailingZeros(bitmap);
-			move = new Move(square, squareTo, type);
-			moveBoard = move(move, side, moveBoard);
-			if (!isAttacked(getKingIndex(side, moveBoard), side, moveBoard)) {
-				moves.add(move);
-			}
+	public static int getQuietMovesForColor(int side, Position position,
+			MoveList moves) {
+		return MoveGenerator.generate(side, position.getBoard(),
+				position.getBitMapForColor(side),
+				position.getBitMapForColor(oppositeSide(side)), -1L,
+				MoveGenerator.QUIETS, moves);
+	}
 
-			bitmap &= (bitmap - 1);
+	/**
+	 * Add all valid moves from a square to a move list.
+	 * 
+	 * @param square
+	 *            the square to move from
+	 * @param side
+	 *            the side to move
+	 * @param board
+	 *            the board to generate moves for
+	 * @param moves
+	 *            the list the moves are added to
+	 * @return the number of moves added
+	 */
+
+	public static int getValidMovesForSquare(int square, int side,
+			long[][] board, MoveList moves) {
+		if (getPieceAtSquare(board, square, side) == -1) {
+			return 0;
 		}
+		return MoveGenerator.generate(side, board, masks[square], moves);
+	}
 
-		return moves;
+	public static int getValidMovesForSquare(int square, int side,
+			Position position, MoveList moves) {
+		if ((position.getBitMapForColor(side) & masks[square]) == 0) {
+			return 0;
+		}
+		return MoveGenerator.generate(side, position.getBoard(),
+				position.getBitMapForColor(side),
+				position.getBitMapForColor(oppositeSide(side)), masks[square],
+				moves);
 	}
 
-	public static List<Move> getValidMovesForColor(int side, long[][] board) {
-		long bitmap = getBitMapForColor(board, side);
-		int square;
-		List<Move> moves = new ArrayList<Move>();
+	/**
+	 * Get the square the rook moves from when castling.
+	 * 
+	 * @param kingTo
+	 *            the square the king moves to
+	 * @return the square of the rook
+	 */
 
-		while (bitmap != 0) {
-			square = Long.numberOfTrailingZeros(bitmap);
-			moves.addAll(getValidMovesForSquare(square, side, board));
-			bitmap &= (bitmap - 1);
+	public static int getCastleRookFrom(int kingTo) {
+		switch (kingTo) {
+		case 58:
+			return 56;
+		case 62:
+			return 63;
+		case 2:
+			return 0;
+		case 6:
+			return 7;
 		}
+		return -1;
+	}
 
-		return moves;
+	/**
+	 * Get the square the rook moves to when castling.
+	 * 
+	 * @param kingTo
+	 *            the square the king moves to
+	 * @return the square the rook ends up on
+	 */
 
+	public static int getCastleRookTo(int kingTo) {
+		switch (kingTo) {
+		case 58:
+			return 59;
+		case 62:
+			return 61;
+		case 2:
+			return 3;
+		case 6:
+			return 5;
+		}
+		return -1;
 	}
 
 	/**
@@ -698,63 +819,230 @@ public class Board implements Serializable {
 	 */
 
 	public static long[][] move(Move move, int side, long[][] board) {
+		if (move.hasExtraMove() && move.getExtraMove().getTo() == -1) {
+			board = removePieceAtSquare(board, move.getExtraMove().getFrom());
+		}
+		return move(move.encode(), side, board);
+	}
+
+	/**
+	 * Just moves a piece not checking anything
+	 * 
+	 * @param move
+	 *            the move to make packed as an int (see Move.encode)
+	 * @param side
+	 *            the side that makes a move
+	 * @param board
+	 *            the board to make the move on.
+	 * @return the board with the move done.
+	 */
+
+	public static long[][] move(int move, int side, long[][] board) {
+		move(move, side, board[side], 0, board[oppositeSide(side)], 0);
+		return board;
+	}
+
+	/**
+	 * Make a move and push what is needed to take it back on the undo stack.
+	 * Promotions has to have the Move.FLAG_PROMOTION flag set so we know a
+	 * pawn has to be put back.
+	 * 
+	 * @param move
+	 *            the move to make packed as an int (see Move.encode)
+	 * @param side
+	 *            the side that makes a move
+	 * @param board
+	 *            the board to make the move on.
+	 * @param undo
+	 *            the stack to push the undo record on.
+	 * @return the board with the move done.
+	 */
+
+	public static long[][] makeMove(int move, int side, long[][] board,
+			UndoStack undo) {
+		makeMove(move, side, board[side], 0, board[oppositeSide(side)], 0,
+				undo);
+		return board;
+	}
+
+	/**
+	 * Take back the last move made with makeMove.
+	 * 
+	 * @param move
+	 *            the move to take back, the same as given to makeMove.
+	 * @param side
+	 *            the side that made the move
+	 * @param board
+	 *            the board to take the move back on.
+	 * @param undo
+	 *            the stack to pop the undo record from.
+	 * @return the board as it was before the move.
+	 */
+
+	public static long[][] unmakeMove(int move, int side, long[][] board,
+			UndoStack undo) {
+		unmakeMove(move, side, board[side], 0, board[oppositeSide(side)], 0,
+				undo);
+		return board;
+	}
+
+	/*
+	 * The moves are made on the bitmaps of the side moving and of the other
+	 * side read from arrays at an offset, so the same code works for the
+	 * rows of a long[][] board and for a flat board, like in MoveGenerator.
+	 */
+
+	private static void move(int move, int side, long[] us, int u,
+			long[] them, int t) {
+		int from = Move.fromSquare(move);
+		int to = Move.toSquare(move);
+		int type = Move.pieceType(move);
+
 		// Remove the pieces
-		board = removePieceAtSquare(board, move.getFrom());
-		board = removePieceAtSquare(board, move.getTo());
+		clearSquare(us, u, from);
+		clearSquare(them, t, from);
+		clearSquare(us, u, to);
+		clearSquare(them, t, to);
 
 		// Clear en passant
 		if (side == Commons.Color.BLACK) {
-			board[side][6] &= ~Commons.Bitmaps.RANKS[5];
+			us[u + 6] &= ~Commons.Bitmaps.RANKS[5];
 		} else {
-			board[side][6] &= ~Commons.Bitmaps.RANKS[2];
+			us[u + 6] &= ~Commons.Bitmaps.RANKS[2];
 		}
 
-		switch (move.getType()) {
+		switch (type) {
 		case Commons.PieceType.PAWN:
 			// Double push
-			if (Math.abs(move.getTo() - move.getFrom()) == 16) {
-				if (side == Commons.Color.BLACK) {
-					board[side][6] = setBit(board[side][6], move.getTo() - 8);
-				} else {
-					board[side][6] = setBit(board[side][6], move.getTo() + 8);
-				}
+			if (Math.abs(to - from) == 16) {
+				us[u + 6] |= masks[side == Commons.Color.BLACK ? to - 8
+						: to + 8];
 			}
 
 			// If en passant move remove the right piece
-			if ((masks[move.getTo()] & board[oppositeSide(side)][6]) != 0) {
-				if (side == Commons.Color.BLACK) {
-					board = removePieceAtSquare(board, move.getTo() - 8);
-				} else {
-					board = removePieceAtSquare(board, move.getTo() + 8);
-				}
+			if ((masks[to] & them[t + 6]) != 0) {
+				int captured = side == Commons.Color.BLACK ? to - 8 : to + 8;
+				clearSquare(us, u, captured);
+				clearSquare(them, t, captured);
 			}
 			break;
 
 		case Commons.PieceType.KING:
-			// Clear king has moved flag
-			board[side][6] &= ~masks[move.getFrom()];
-			break;
-
 		case Commons.PieceType.ROOK:
-			// Clear rook has moved flag
-			board[side][6] &= ~masks[move.getFrom()];
+			// Clear has moved flag
+			us[u + 6] &= ~masks[from];
 			break;
 		}
 
-		if (move.hasExtraMove()) {
-			if (move.getExtraMove().getTo() != -1) {
-				move(move.getExtraMove(), side, board);
-			} else {
-				board = removePieceAtSquare(board, move.getExtraMove()
-						.getFrom());
-			}
+		// The other side can only capture en passant right after the double
+		// push, and can not castle with a rook that was captured.
+		them[t + 6] &= ~(Commons.Bitmaps.RANKS[2] | Commons.Bitmaps.RANKS[5]
+				| masks[to]);
+
+		if (Move.isCastle(move)) {
+			move(Move.encode(getCastleRookFrom(to), getCastleRookTo(to),
+					Commons.PieceType.ROOK), side, us, u, them, t);
 		}
 
 		// Set the pieces
-		board = setPieceAtSquare(board, move.getTo(), move.getType(), side);
-		return board;
+		us[u + type] |= masks[to];
+	}
+
+	private static void makeMove(int move, int side, long[] us, int u,
+			long[] them, int t, UndoStack undo) {
+		int to = Move.toSquare(move);
+		int captured = getTypeAtSquare(them, t, to);
+		int capturedSquare = to;
+
+		// En passant, the same check as in move
+		if (captured == -1 && Move.pieceType(move) == Commons.PieceType.PAWN
+				&& (masks[to] & them[t + 6]) != 0) {
+			captured = Commons.PieceType.PAWN;
+			capturedSquare = side == Commons.Color.BLACK ? to - 8 : to + 8;
+		}
+
+		if (side == Commons.Color.BLACK) {
+			undo.push(us[u + 6], them[t + 6], captured, capturedSquare);
+		} else {
+			undo.push(them[t + 6], us[u + 6], captured, capturedSquare);
+		}
+		move(move, side, us, u, them, t);
+	}
+
+	private static void unmakeMove(int move, int side, long[] us, int u,
+			long[] them, int t, UndoStack undo) {
+		int from = Move.fromSquare(move);
+		int to = Move.toSquare(move);
+		int type = Move.pieceType(move);
+		int i = undo.pop();
+
+		us[u + type] &= ~masks[to];
+		int moved = Move.isPromotion(move) ? Commons.PieceType.PAWN : type;
+		us[u + moved] |= masks[from];
+
+		if (Move.isCastle(move)) {
+			us[u + Commons.PieceType.ROOK] &= ~masks[getCastleRookTo(to)];
+			us[u + Commons.PieceType.ROOK] |= masks[getCastleRookFrom(to)];
+		}
+
+		int captured = undo.captured[i];
+		if (captured != -1) {
+			them[t + (captured & 0x7)] |= masks[captured >>> 3];
+		}
+
+		if (side == Commons.Color.BLACK) {
+			us[u + 6] = undo.blackState[i];
+			them[t + 6] = undo.whiteState[i];
+		} else {
+			us[u + 6] = undo.whiteState[i];
+			them[t + 6] = undo.blackState[i];
+		}
 	}
 
+	/**
+	 * Remove the piece of a color on a square, its bitmaps starting at an
+	 * offset.
+	 */
+
+	private static void clearSquare(long[] pieces, int offset, int square) {
+		for (int i = 0; i < 6; i++) {
+			pieces[offset + i] &= ~masks[square];
+		}
+	}
+
+	/**
+	 * @return the type of the piece of a color on a square, its bitmaps
+	 *         starting at an offset, or -1
+	 */
+
+	private static int getTypeAtSquare(long[] pieces, int offset, int square) {
+		for (int i = 0; i < 6; i++) {
+			if ((pieces[offset + i] & masks[square]) != 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Copy a board into another board without allocating anything.
+	 * 
+	 * @param from
+	 *            the board to copy
+	 * @param to
+	 *            the board to copy into
+	 * @return the board copied into.
+	 */
+
+	public static long[][] copyBoard(long[][] from, long[][] to) {
+		System.arraycopy(from[Commons.Color.BLACK], 0, to[Commons.Color.BLACK],
+				0, 7);
+		System.arraycopy(from[Commons.Color.WHITE], 0, to[Commons.Color.WHITE],
+				0, 7);
+		return to;
+	}
+
+
 	/**
 	 * Can copy a 2D array.
 	 * 
@@ -770,4 +1058,263 @@ public class Board implements Serializable {
 		}
 		return ret;
 	}
+
+	/*
+	 * A flat board is the same as a long[][] board in one long[] of
+	 * FLAT_LENGTH, with board[color][type] at getFlatIndex(color, type). A
+	 * bitmap is one load away instead of two, there is one bounds check
+	 * instead of two and copying it is one System.arraycopy. The methods
+	 * below are the same as the ones for long[][] boards above, initFlatBoard
+	 * and copyBoard stand in for initBitBoard and deepCopy2DArray. Moves are
+	 * made by the same code for both, see move(int, int, long[], int,
+	 * long[], int).
+	 */
+
+	public static final int FLAT_LENGTH = 14;
+
+	/**
+	 * @return where board[color][type] is on a flat board
+	 */
+
+	public static int getFlatIndex(int color, int type) {
+		return color * 7 + type;
+	}
+
+	/**
+	 * @return a flat board in the start position
+	 */
+
+	public static long[] initFlatBoard() {
+		return flatten(initBitBoard(), new long[FLAT_LENGTH]);
+	}
+
+	/**
+	 * Copy a long[][] board into a flat board.
+	 * 
+	 * @return the flat board
+	 */
+
+	public static long[] flatten(long[][] board, long[] flat) {
+		System.arraycopy(board[Commons.Color.BLACK], 0, flat,
+				getFlatIndex(Commons.Color.BLACK, 0), 7);
+		System.arraycopy(board[Commons.Color.WHITE], 0, flat,
+				getFlatIndex(Commons.Color.WHITE, 0), 7);
+		return flat;
+	}
+
+	/**
+	 * Copy a flat board into a long[][] board.
+	 * 
+	 * @return the long[][] board
+	 */
+
+	public static long[][] unflatten(long[] flat, long[][] board) {
+		System.arraycopy(flat, getFlatIndex(Commons.Color.BLACK, 0),
+				board[Commons.Color.BLACK], 0, 7);
+		System.arraycopy(flat, getFlatIndex(Commons.Color.WHITE, 0),
+				board[Commons.Color.WHITE], 0, 7);
+		return board;
+	}
+
+	public static long getBitMap(long[] board) {
+		return getBitMapForColor(board, Commons.Color.BLACK)
+				| getBitMapForColor(board, Commons.Color.WHITE);
+	}
+
+	public static long getBitMapForType(long[] board, int type) {
+		return board[getFlatIndex(Commons.Color.BLACK, type)]
+				| board[getFlatIndex(Commons.Color.WHITE, type)];
+	}
+
+	public static long getBitMapForColor(long[] board, int color) {
+		int i = getFlatIndex(color, 0);
+		return board[i] | board[i + 1] | board[i + 2] | board[i + 3]
+				| board[i + 4] | board[i + 5];
+	}
+
+	public static long[] setPieceAtSquare(long[] board, int square, int type,
+			int color) {
+		board[getFlatIndex(color, type)] |= masks[square];
+		return board;
+	}
+
+	public static long[] removePieceAtSquare(long[] board, int square,
+			int type, int color) {
+		board[getFlatIndex(color, type)] &= ~masks[square];
+		return board;
+	}
+
+	public static long[] removePieceAtSquare(long[] board, int square) {
+		clearSquare(board, getFlatIndex(Commons.Color.BLACK, 0), square);
+		clearSquare(board, getFlatIndex(Commons.Color.WHITE, 0), square);
+		return board;
+	}
+
+	public static int getPieceAtSquare(long[] board, int square, int color) {
+		return getTypeAtSquare(board, getFlatIndex(color, 0), square);
+	}
+
+	public static boolean isAttacked(int square, int side, long[] board) {
+		return isAttacked(square, side, board, getBitMap(board));
+	}
+
+	public static boolean isAttacked(int square, int side, long[] board,
+			long occupied) {
+		return getAttackersTo(board, square, occupied, oppositeSide(side)) != 0;
+	}
+
+	public static long getAttackersTo(long[] board, int square, long occupied) {
+		return getAttackersTo(board, square, occupied, Commons.Color.BLACK)
+				| getAttackersTo(board, square, occupied, Commons.Color.WHITE);
+	}
+
+	public static long getAttackersTo(long[] board, int square,
+			long occupied, int color) {
+		return getAttackersTo(board, getFlatIndex(color, 0), square, occupied,
+				color);
+	}
+
+	protected static boolean isAttackedByKnight(int square, int side,
+			long[] board) {
+		return (board[getFlatIndex(oppositeSide(side), Commons.PieceType.KNIGHT)] & Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KNIGHT][square]) != 0;
+	}
+
+	protected static boolean isAttackedByPawn(int square, int side,
+			long[] board) {
+		return (board[getFlatIndex(oppositeSide(side), Commons.PieceType.PAWN)] & Commons.Bitmaps.PAWN_ATTACKS[side][square]) != 0;
+	}
+
+	protected static boolean isAttackedByKing(int square, int side,
+			long[] board) {
+		return (board[getFlatIndex(oppositeSide(side), Commons.PieceType.KING)] & Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KING][square]) != 0;
+	}
+
+	protected static boolean isAttackedByRook(int square, int side,
+			long[] board) {
+		return isAttackedByRook(square, side, board, getBitMap(board));
+	}
+
+	protected static boolean isAttackedByRook(int square, int side,
+			long[] board, long occupied) {
+		return isAttackedBySlider(Commons.PieceType.ROOK, square, board,
+				getFlatIndex(oppositeSide(side), 0), occupied);
+	}
+
+	protected static boolean isAttackedByBishop(int square, int side,
+			long[] board) {
+		return isAttackedByBishop(square, side, board, getBitMap(board));
+	}
+
+	protected static boolean isAttackedByBishop(int square, int side,
+			long[] board, long occupied) {
+		return isAttackedBySlider(Commons.PieceType.BISHOP, square, board,
+				getFlatIndex(oppositeSide(side), 0), occupied);
+	}
+
+	protected static boolean isAttackedByQueen(int square, int side,
+			long[] board) {
+		return isAttackedByQueen(square, side, board, getBitMap(board));
+	}
+
+	protected static boolean isAttackedByQueen(int square, int side,
+			long[] board, long occupied) {
+		return isAttackedBySlider(Commons.PieceType.QUEEN, square, board,
+				getFlatIndex(oppositeSide(side), 0), occupied);
+	}
+
+	public static long getPawnMovesFrom(int square, int side, long[] board) {
+		return getPawnMovesFrom(square, side, getBitMap(board));
+	}
+
+	public static long getPawnAttacksAndMoves(int square, int side,
+			long[] board) {
+		return getPawnAttacksFrom(square, side, board)
+				| getPawnMovesFrom(square, side, board);
+	}
+
+	protected static long getPawnAttacksFrom(int square, int side,
+			long[] board) {
+		return getPawnAttacksFrom(square, side, board,
+				getBitMapForColor(board, oppositeSide(side)));
+	}
+
+	protected static long getPawnAttacksFrom(int square, int side,
+			long[] board, long enemyBitMap) {
+		return getPawnAttacksFrom(square, side, board,
+				getFlatIndex(oppositeSide(side), 0), enemyBitMap);
+	}
+
+	protected static int getKingIndex(int side, long[] board) {
+		return Long.numberOfTrailingZeros(board[getFlatIndex(side,
+				Commons.PieceType.KING)]);
+	}
+
+	protected static boolean isSquareOccupied(int square, long[] board) {
+		return (masks[square] & getBitMap(board)) != 0;
+	}
+
+	public static List<Move> getValidMovesForSquare(int square, int side,
+			long[] board) {
+		if (getPieceAtSquare(board, square, side) == -1) {
+			return null;
+		}
+
+		MoveList moves = new MoveList();
+		getValidMovesForSquare(square, side, board, moves);
+		return moves.toList(0);
+	}
+
+	public static int getValidMovesForSquare(int square, int side,
+			long[] board, MoveList moves) {
+		if (getPieceAtSquare(board, square, side) == -1) {
+			return 0;
+		}
+		return MoveGenerator.generate(side, board, masks[square], moves);
+	}
+
+	public static List<Move> getValidMovesForColor(int side, long[] board) {
+		MoveList moves = new MoveList();
+		getValidMovesForColor(side, board, moves);
+		return moves.toList(0);
+	}
+
+	public static int getValidMovesForColor(int side, long[] board,
+			MoveList moves) {
+		return MoveGenerator.generate(side, board, -1L, moves);
+	}
+
+	public static long[] move(Move move, int side, long[] board) {
+		if (move.hasExtraMove() && move.getExtraMove().getTo() == -1) {
+			board = removePieceAtSquare(board, move.getExtraMove().getFrom());
+		}
+		return move(move.encode(), side, board);
+	}
+
+	public static long[] move(int move, int side, long[] board) {
+		int opposite = oppositeSide(side);
+		move(move, side, board, getFlatIndex(side, 0), board,
+				getFlatIndex(opposite, 0));
+		return board;
+	}
+
+	public static long[] makeMove(int move, int side, long[] board,
+			UndoStack undo) {
+		int opposite = oppositeSide(side);
+		makeMove(move, side, board, getFlatIndex(side, 0), board,
+				getFlatIndex(opposite, 0), undo);
+		return board;
+	}
+
+	public static long[] unmakeMove(int move, int side, long[] board,
+			UndoStack undo) {
+		int opposite = oppositeSide(side);
+		unmakeMove(move, side, board, getFlatIndex(side, 0), board,
+				getFlatIndex(opposite, 0), undo);
+		return board;
+	}
+
+	public static long[] copyBoard(long[] from, long[] to) {
+		System.arraycopy(from, 0, to, 0, FLAT_LENGTH);
+		return to;
+	}
 }
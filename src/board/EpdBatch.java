@@ -0,0 +1,232 @@
+package board;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.Commons;
+
+/**
+ * Analyzes a file of positions, one FEN or EPD line each, on many threads.
+ * The file is memory mapped in chunks that end on a line break, every chunk
+ * is parsed straight from the mapped bytes into the board of the thread
+ * working on it. For every position a line with
+ *
+ * <pre>
+ * legal moves, 1 if in check or 0, squares attacked by the side to move
+ * </pre>
+ *
+ * is written to the output in the same order as the input, or "error" if
+ * the line is not a position. Empty lines are skipped. Only a few chunks are
+ * kept in memory at a time, so files of any size can be analyzed.
+ */
+
+public class EpdBatch {
+
+	static final int CHUNK_SIZE = 4 << 20;
+
+	private static final ThreadLocal<Worker> WORKERS = ThreadLocal
+			.withInitial(Worker::new);
+
+	/**
+	 * Analyze a file and print how fast it went.
+	 *
+	 * @param input
+	 *            the positions
+	 * @param output
+	 *            the file to write the results to
+	 * @param threads
+	 *            the number of threads, at least 1
+	 * @param report
+	 *            where to print the number of positions per second
+	 * @return the number of positions
+	 */
+
+	public static long run(Path input, Path output, int threads,
+			PrintStream report) throws IOException {
+		return run(input, output, threads, CHUNK_SIZE, report);
+	}
+
+	static long run(Path input, Path output, int threads, int chunkSize,
+			PrintStream report) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1: "
+					+ threads);
+		}
+		long time = System.nanoTime();
+		Chunk total = new Chunk();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				OutputStream out = Files.newOutputStream(output)) {
+			long[] bounds = findChunks(in, chunkSize);
+			ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+
+			for (int i = 0; i < bounds.length - 1; i++) {
+				MappedByteBuffer bytes = in.map(FileChannel.MapMode.READ_ONLY,
+						bounds[i], bounds[i + 1] - bounds[i]);
+				pending.add(pool.submit(() -> WORKERS.get().analyze(bytes)));
+
+				// Write the oldest chunk before mapping more than a few
+				if (pending.size() > threads * 2) {
+					write(pending.poll(), out, total);
+				}
+			}
+
+			while (!pending.isEmpty()) {
+				write(pending.poll(), out, total);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		time = System.nanoTime() - time;
+		report.printf("%d positions, %d errors in %d ms, %d positions/s%n",
+				total.positions, total.errors, time / 1000000,
+				Perft.nodesPerSecond(total.positions, time));
+		return total.positions;
+	}
+
+	/**
+	 * Split a file in chunks of about chunkSize bytes that start and end on
+	 * a line break.
+	 *
+	 * @return the start of every chunk followed by the size of the file
+	 */
+
+	private static long[] findChunks(FileChannel in, int chunkSize)
+			throws IOException {
+		long size = in.size();
+		List<Long> starts = new ArrayList<Long>();
+		ByteBuffer scan = ByteBuffer.allocate(4096);
+
+		for (long start = 0; start < size;) {
+			starts.add(start);
+
+			long next = start + chunkSize;
+			while (next < size) {
+				scan.clear();
+				int read = in.read(scan, next);
+				int i = 0;
+				while (i < read && scan.get(i) != '\n') {
+					i++;
+				}
+
+				next += i;
+				if (i < read) {
+					next++;
+					break;
+				}
+			}
+			start = Math.min(next, size);
+		}
+
+		long[] bounds = new long[starts.size() + 1];
+		for (int i = 0; i < starts.size(); i++) {
+			bounds[i] = starts.get(i);
+		}
+		bounds[starts.size()] = size;
+		return bounds;
+	}
+
+	private static void write(Future<Chunk> future, OutputStream out,
+			Chunk total) throws IOException {
+		try {
+			Chunk chunk = future.get();
+			out.write(chunk.results);
+			total.positions += chunk.positions;
+			total.errors += chunk.errors;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static class Chunk {
+		byte[] results;
+		long positions;
+		long errors;
+	}
+
+	/**
+	 * The board and move list of one thread, used for all its chunks.
+	 */
+
+	private static class Worker {
+
+		private final long[][] board = new long[2][7];
+		private final MoveList moves = new MoveList();
+		private final StringBuilder results = new StringBuilder();
+
+		Chunk analyze(ByteBuffer bytes) {
+			Chunk chunk = new Chunk();
+			results.setLength(0);
+
+			int end = bytes.limit();
+			for (int start = 0; start < end;) {
+				int eol = start;
+				while (eol < end && bytes.get(eol) != '\n') {
+					eol++;
+				}
+
+				if (!isBlank(bytes, start, eol)) {
+					try {
+						int side = Fen.parse(bytes, start, eol, board);
+						analyze(side);
+						chunk.positions++;
+					} catch (IllegalArgumentException e) {
+						results.append("error\n");
+						chunk.errors++;
+					}
+				}
+				start = eol + 1;
+			}
+
+			chunk.results = results.toString().getBytes(
+					StandardCharsets.US_ASCII);
+			return chunk;
+		}
+
+		private void analyze(int side) {
+			moves.clear();
+			Board.getValidMovesForColor(side, board, moves);
+
+			long king = board[side][Commons.PieceType.KING];
+			boolean check = king != 0
+					&& Board.isAttacked(Long.numberOfTrailingZeros(king),
+							side, board);
+
+			long attacked = MoveGenerator.getAttackedSquares(side,
+					board[side], Board.getBitMap(board));
+
+			results.append(moves.size()).append(' ').append(check ? 1 : 0)
+					.append(' ').append(Long.bitCount(attacked)).append('\n');
+		}
+
+		private static boolean isBlank(ByteBuffer bytes, int start, int end) {
+			for (int i = start; i < end; i++) {
+				if (bytes.get(i) > ' ') {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,302 @@
+package board;
+
+import java.nio.ByteBuffer;
+
+import utils.Commons;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation for the long[2][7]
+ * board layout. Castling rights and the en passant square end up as flags in
+ * row 6, the same way Board.initBitBoard and Board.move keeps them.
+ *
+ * Reading goes one character at a time straight into an existing board and
+ * writing appends to a StringBuilder the caller keeps, so neither makes any
+ * garbage when positions come in and go out at a high rate. The move
+ * counters are not kept on the board, they are skipped when reading.
+ */
+
+public class Fen {
+
+	public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final String PIECES = "kqrbnp";
+
+	private static final long EN_PASSANT_SQUARES = Commons.Bitmaps.RANKS[2]
+			| Commons.Bitmaps.RANKS[5];
+
+	/**
+	 * Parse a FEN into a board.
+	 *
+	 * @param fen
+	 *            the position
+	 * @param board
+	 *            the board to put the position in, everything on it is
+	 *            cleared first.
+	 * @return the side to move
+	 */
+
+	public static int parse(CharSequence fen, long[][] board) {
+		return parse(fen, null, 0, fen.length(), board);
+	}
+
+	/**
+	 * Parse the FEN between start and end of a longer text, anything after
+	 * the en passant square like the counters or EPD operations is skipped.
+	 *
+	 * @return the side to move
+	 */
+
+	public static int parse(CharSequence text, int start, int end,
+			long[][] board) {
+		return parse(text, null, start, end, board);
+	}
+
+	/**
+	 * Parse a FEN from ASCII bytes, between start and end of the buffer. The
+	 * position of the buffer is not changed.
+	 *
+	 * @return the side to move
+	 */
+
+	public static int parse(ByteBuffer bytes, int start, int end,
+			long[][] board) {
+		return parse(null, bytes, start, end, board);
+	}
+
+	/**
+	 * Parse a FEN into the board of a position and find its occupied squares
+	 * and key again.
+	 *
+	 * @return the side to move
+	 */
+
+	public static int parse(CharSequence fen, Position position) {
+		int side = parse(fen, position.getBoard());
+		position.refresh(side);
+		return side;
+	}
+
+	/**
+	 * The FEN is read from either chars or bytes, the other one is null.
+	 */
+
+	private static int parse(CharSequence chars, ByteBuffer bytes, int start,
+			int end, long[][] board) {
+		for (int i = 0; i < 7; i++) {
+			board[Commons.Color.BLACK][i] = 0;
+			board[Commons.Color.WHITE][i] = 0;
+		}
+
+		int i = skipSpaces(chars, bytes, start, end);
+		int square = 0;
+		for (; i < end; i++) {
+			char c = charAt(chars, bytes, i);
+			if (isSpace(c)) {
+				break;
+			}
+
+			if (c == '/') {
+				continue;
+			}
+
+			if (c >= '1' && c <= '8') {
+				square += c - '0';
+				continue;
+			}
+
+			int type = PIECES.indexOf(Character.toLowerCase(c));
+			if (type == -1 || square > 63) {
+				throw notAFen(chars, bytes, start, end);
+			}
+
+			int color = Character.isUpperCase(c) ? Commons.Color.WHITE
+					: Commons.Color.BLACK;
+			Board.setPieceAtSquare(board, square++, type, color);
+		}
+
+		i = skipSpaces(chars, bytes, i, end);
+		if (i == end) {
+			throw notAFen(chars, bytes, start, end);
+		}
+
+		char c = charAt(chars, bytes, i++);
+		if (c != 'w' && c != 'b') {
+			throw notAFen(chars, bytes, start, end);
+		}
+		int side = c == 'b' ? Commons.Color.BLACK : Commons.Color.WHITE;
+
+		for (i = skipSpaces(chars, bytes, i, end); i < end; i++) {
+			c = charAt(chars, bytes, i);
+			if (isSpace(c)) {
+				break;
+			}
+
+			switch (c) {
+			case 'K':
+				board[Commons.Color.WHITE][6] |= Board.masks[60]
+						| Board.masks[63];
+				break;
+			case 'Q':
+				board[Commons.Color.WHITE][6] |= Board.masks[60]
+						| Board.masks[56];
+				break;
+			case 'k':
+				board[Commons.Color.BLACK][6] |= Board.masks[4]
+						| Board.masks[7];
+				break;
+			case 'q':
+				board[Commons.Color.BLACK][6] |= Board.masks[4]
+						| Board.masks[0];
+				break;
+			}
+		}
+
+		// The en passant square is kept by the side that made the double push
+		i = skipSpaces(chars, bytes, i, end);
+		if (i < end && charAt(chars, bytes, i) != '-') {
+			int file = i + 1 < end ? charAt(chars, bytes, i) - 'a' : -1;
+			int rank = i + 1 < end ? charAt(chars, bytes, i + 1) - '1' : -1;
+			if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+				throw notAFen(chars, bytes, start, end);
+			}
+			board[Board.oppositeSide(side)][6] |= Board.masks[(7 - rank) * 8
+					+ file];
+		}
+
+		return side;
+	}
+
+	private static char charAt(CharSequence chars, ByteBuffer bytes, int i) {
+		return chars != null ? chars.charAt(i) : (char) (bytes.get(i) & 0xFF);
+	}
+
+	private static boolean isSpace(char c) {
+		return c <= ' ';
+	}
+
+	private static int skipSpaces(CharSequence chars, ByteBuffer bytes,
+			int i, int end) {
+		while (i < end && isSpace(charAt(chars, bytes, i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static IllegalArgumentException notAFen(CharSequence chars,
+			ByteBuffer bytes, int start, int end) {
+		StringBuilder fen = new StringBuilder();
+		for (int i = start; i < end; i++) {
+			fen.append(charAt(chars, bytes, i));
+		}
+		return new IllegalArgumentException("Not a FEN: " + fen);
+	}
+
+	/**
+	 * Write the FEN of a board with the counters at 0 and 1.
+	 *
+	 * @param out
+	 *            the builder to append to
+	 * @return the builder
+	 */
+
+	public static StringBuilder write(long[][] board, int side,
+			StringBuilder out) {
+		return write(board, side, 0, 1, out);
+	}
+
+	public static StringBuilder write(Position position, StringBuilder out) {
+		return write(position.getBoard(), position.getSide(), 0, 1, out);
+	}
+
+	/**
+	 * Write the FEN of a board.
+	 *
+	 * @param board
+	 *            the board
+	 * @param side
+	 *            the side to move
+	 * @param halfmoves
+	 *            the halfmove clock
+	 * @param fullmoves
+	 *            the number of the move
+	 * @param out
+	 *            the builder to append to
+	 * @return the builder
+	 */
+
+	public static StringBuilder write(long[][] board, int side,
+			int halfmoves, int fullmoves, StringBuilder out) {
+		for (int row = 0; row < 8; row++) {
+			int empty = 0;
+
+			for (int square = row * 8; square < row * 8 + 8; square++) {
+				int type = Board.getPieceAtSquare(board, square,
+						Commons.Color.WHITE);
+				char c;
+				if (type != -1) {
+					c = Character.toUpperCase(PIECES.charAt(type));
+				} else {
+					type = Board.getPieceAtSquare(board, square,
+							Commons.Color.BLACK);
+					if (type == -1) {
+						empty++;
+						continue;
+					}
+					c = PIECES.charAt(type);
+				}
+
+				if (empty > 0) {
+					out.append((char) ('0' + empty));
+					empty = 0;
+				}
+				out.append(c);
+			}
+
+			if (empty > 0) {
+				out.append((char) ('0' + empty));
+			}
+			if (row < 7) {
+				out.append('/');
+			}
+		}
+
+		out.append(side == Commons.Color.WHITE ? " w " : " b ");
+
+		int length = out.length();
+		long white = board[Commons.Color.WHITE][6];
+		long black = board[Commons.Color.BLACK][6];
+		if (hasFlags(white, 60, 63)) {
+			out.append('K');
+		}
+		if (hasFlags(white, 60, 56)) {
+			out.append('Q');
+		}
+		if (hasFlags(black, 4, 7)) {
+			out.append('k');
+		}
+		if (hasFlags(black, 4, 0)) {
+			out.append('q');
+		}
+		if (out.length() == length) {
+			out.append('-');
+		}
+
+		long ep = board[Board.oppositeSide(side)][6] & EN_PASSANT_SQUARES;
+		if (ep == 0) {
+			out.append(" -");
+		} else {
+			int square = Long.numberOfTrailingZeros(ep);
+			out.append(' ').append((char) ('a' + square % 8))
+					.append((char) ('8' - square / 8));
+		}
+
+		return out.append(' ').append(halfmoves).append(' ')
+				.append(fullmoves);
+	}
+
+	private static boolean hasFlags(long state, int king, int rook) {
+		long flags = Board.masks[king] | Board.masks[rook];
+		return (state & flags) == flags;
+	}
+
+}
@@ -0,0 +1,185 @@
+package board;
+
+import utils.Commons;
+
+/**
+ * The Zobrist keys of the positions of a game, with the halfmove clock of
+ * each, to find draws by repetition and by the fifty-move rule. The keys
+ * are kept in a ring buffer of primitive arrays, so pushing and popping
+ * moves does not allocate anything, and only the last capacity positions
+ * are remembered.
+ *
+ * A position can only come back after the same side is to move again and
+ * no pawn has moved and nothing has been captured since, so looking for a
+ * repetition goes back every other position and stops at the last such
+ * move. That is at most halfmove clock / 2 keys, never more than 50 before
+ * the fifty-move rule makes it a draw anyway.
+ */
+
+public class GameHistory {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	// Plies without a pawn move or a capture before it is a draw
+	public static final int FIFTY_MOVES = 100;
+
+	private final long[] keys;
+	private final int[] clocks;
+	private final int mask;
+
+	// The number of positions pushed, the current one is at size - 1
+	private int size;
+
+	public GameHistory() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            how many positions to remember, rounded up to a power of
+	 *            two. It has to be more than FIFTY_MOVES to find every
+	 *            repetition.
+	 */
+
+	public GameHistory(int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		int length = Integer.highestOneBit(capacity);
+		if (length < capacity) {
+			length <<= 1;
+		}
+		keys = new long[length];
+		clocks = new int[length];
+		mask = length - 1;
+	}
+
+	/**
+	 * Copy another history, for a search that needs its own.
+	 */
+
+	public GameHistory(GameHistory other) {
+		keys = other.keys.clone();
+		clocks = other.clocks.clone();
+		mask = other.mask;
+		size = other.size;
+	}
+
+	/**
+	 * Forget all positions and start again from one.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param halfmoveClock
+	 *            the plies since the last pawn move or capture, from the FEN
+	 *            or 0
+	 */
+
+	public void reset(long key, int halfmoveClock) {
+		keys[0] = key;
+		clocks[0] = halfmoveClock;
+		size = 1;
+	}
+
+	/**
+	 * Add the position reached by a move.
+	 *
+	 * @param move
+	 *            the move made, see Move.encode
+	 * @param capture
+	 *            if the move captured something
+	 * @param key
+	 *            the Zobrist key of the position after the move
+	 */
+
+	public void push(int move, boolean capture, long key) {
+		int clock = capture || Move.isPromotion(move)
+				|| Move.pieceType(move) == Commons.PieceType.PAWN ? 0
+				: getHalfmoveClock() + 1;
+		keys[size & mask] = key;
+		clocks[size & mask] = clock;
+		size++;
+	}
+
+	/**
+	 * Take back the last position pushed.
+	 */
+
+	public void pop() {
+		size--;
+	}
+
+	/**
+	 * @return the Zobrist key of the current position
+	 */
+
+	public long getKey() {
+		return keys[(size - 1) & mask];
+	}
+
+	/**
+	 * @return the plies since the last pawn move or capture
+	 */
+
+	public int getHalfmoveClock() {
+		return size == 0 ? 0 : clocks[(size - 1) & mask];
+	}
+
+	/**
+	 * @return how many times the current position was there before, since
+	 *         the last pawn move or capture
+	 */
+
+	public int getRepetitions() {
+		long key = getKey();
+		int last = Math.min(getHalfmoveClock(), Math.min(size - 1, mask));
+		int repetitions = 0;
+
+		// The same side has to be to move, and going there and back takes
+		// two moves of each side
+		for (int i = 4; i <= last; i += 2) {
+			if (keys[(size - 1 - i) & mask] == key) {
+				repetitions++;
+			}
+		}
+		return repetitions;
+	}
+
+	/**
+	 * A search takes a position that was there before as a draw, whatever
+	 * happened in between could be played again.
+	 *
+	 * @return true if the current position was there before
+	 */
+
+	public boolean isRepetition() {
+		return getRepetitions() > 0;
+	}
+
+	/**
+	 * @return true if the current position is there for the third time
+	 */
+
+	public boolean isThreefoldRepetition() {
+		return getRepetitions() >= 2;
+	}
+
+	/**
+	 * @return true if fifty moves of each side were made without a pawn move
+	 *         or a capture
+	 */
+
+	public boolean isFiftyMoves() {
+		return getHalfmoveClock() >= FIFTY_MOVES;
+	}
+
+	/**
+	 * @return the number of positions pushed, the ones that fell out of the
+	 *         buffer included
+	 */
+
+	public int size() {
+		return size;
+	}
+
+}
@@ -1,7 +1,18 @@
 package board;
 
+import utils.Commons;
+
 public class Move {
-	
+
+	/*
+	 * A move can also be packed into a single int so it can be stored in a
+	 * primitive buffer (see MoveList). Bit 0-5 is the from square, bit 6-11 is
+	 * the to square and bit 12-14 is the type of piece that ends up on the to
+	 * square. The bits above that are flags.
+	 */
+
+	public static final int FLAG_CASTLE = 1 << 15;
+	public static final int FLAG_PROMOTION = 1 << 16;
 
 	private int to;
 	private int from;
@@ -45,7 +56,84 @@ public class Move {
 	public Move getExtraMove(){
 		return extraMove;
 	}
-	
+
+	/**
+	 * Pack this move into an int. A castling move only keeps the king move,
+	 * the rook move is found again from the square the king moves to.
+	 * 
+	 * @return the packed move
+	 */
+
+	public int encode() {
+		if (extraMove != null && extraMove.getTo() != -1) {
+			return encode(from, to, type, FLAG_CASTLE);
+		}
+		return encode(from, to, type);
+	}
+
+	/**
+	 * Unpack a move packed with encode
+	 * 
+	 * @param move
+	 *            the packed move
+	 * @return a new Move, castling moves get the rook move as extra move.
+	 */
+
+	public static Move decode(int move) {
+		int to = toSquare(move);
+		if (isCastle(move)) {
+			return new Move(fromSquare(move), to, pieceType(move), new Move(
+					Board.getCastleRookFrom(to), Board.getCastleRookTo(to),
+					Commons.PieceType.ROOK));
+		}
+		return new Move(fromSquare(move), to, pieceType(move));
+	}
+
+	public static int encode(int from, int to, int type) {
+		return from | (to << 6) | (type << 12);
+	}
+
+	public static int encode(int from, int to, int type, int flags) {
+		return from | (to << 6) | (type << 12) | flags;
+	}
+
+	public static int fromSquare(int move) {
+		return move & 0x3F;
+	}
+
+	public static int toSquare(int move) {
+		return (move >>> 6) & 0x3F;
+	}
+
+	public static int pieceType(int move) {
+		return (move >>> 12) & 0x7;
+	}
+
+	public static boolean isCastle(int move) {
+		return (move & FLAG_CASTLE) != 0;
+	}
+
+	public static boolean isPromotion(int move) {
+		return (move & FLAG_PROMOTION) != 0;
+	}
+
+	/**
+	 * Get a packed move in coordinate notation, like "e2e4" or "e7e8q".
+	 * 
+	 * @param move
+	 *            the packed move
+	 * @return the move as a string
+	 */
+
+	public static String toAlgebraic(int move) {
+		String str = Board.getSquareName(fromSquare(move))
+				+ Board.getSquareName(toSquare(move));
+		if (isPromotion(move)) {
+			str += "kqrbnp".charAt(pieceType(move));
+		}
+		return str;
+	}
+
 	
 
 	@Override
@@ -0,0 +1,510 @@
+package board;
+
+import utils.Commons;
+
+/**
+ * Generates legal moves only. Instead of trying every move on the board and
+ * checking if the king is attacked afterwards, the pieces giving check, the
+ * pinned pieces and the squares the king can not go to are found once for
+ * the position, and only the moves that respect them are added.
+ *
+ * The captures and the quiet moves can also be generated on their own, so a
+ * search that gets a cutoff from a capture never has to generate the rest.
+ * Promotions are counted as captures and castling as a quiet move.
+ */
+
+public class MoveGenerator {
+
+	private static final long NOT_FILE_A = ~Commons.Bitmaps.FILES[Commons.File.A];
+	private static final long NOT_FILE_H = ~Commons.Bitmaps.FILES[Commons.File.H];
+	private static final long PROMOTION_RANKS = Commons.Bitmaps.RANKS[0]
+			| Commons.Bitmaps.RANKS[7];
+
+	// Which moves to generate
+	public static final int ALL = 0;
+	public static final int CAPTURES = 1;
+	public static final int QUIETS = 2;
+
+	/**
+	 * Add all legal moves of a side to a move list.
+	 *
+	 * @param side
+	 *            the side to move
+	 * @param board
+	 *            the board to generate moves for
+	 * @param fromMask
+	 *            only moves of pieces on these squares are added, use -1L for
+	 *            all pieces.
+	 * @param moves
+	 *            the list the moves are added to
+	 * @return the number of moves added
+	 */
+
+	public static int generate(int side, long[][] board, long fromMask,
+			MoveList moves) {
+		return generate(side, board,
+				Board.getBitMapForColor(board, side),
+				Board.getBitMapForColor(board, Board.oppositeSide(side)),
+				fromMask, moves);
+	}
+
+	/**
+	 * Add all legal moves of a side to a move list when the squares occupied
+	 * by each side are already known, like in a Position.
+	 *
+	 * @param own
+	 *            the squares occupied by the side to move
+	 * @param enemy
+	 *            the squares occupied by the other side
+	 * @return the number of moves added
+	 */
+
+	public static int generate(int side, long[][] board, long own,
+			long enemy, long fromMask, MoveList moves) {
+		return generate(side, board, own, enemy, fromMask, ALL, moves);
+	}
+
+	/**
+	 * Add the legal captures and promotions, the other legal moves or all of
+	 * them.
+	 *
+	 * @param kind
+	 *            ALL, CAPTURES or QUIETS
+	 * @return the number of moves added
+	 */
+
+	public static int generate(int side, long[][] board, long own,
+			long enemy, long fromMask, int kind, MoveList moves) {
+		return generate(side, board[side], 0,
+				board[Board.oppositeSide(side)], 0, own, enemy, fromMask, kind,
+				moves);
+	}
+
+	/**
+	 * Add all legal moves of a side on a flat board, see Board.flatten.
+	 *
+	 * @return the number of moves added
+	 */
+
+	public static int generate(int side, long[] board, long fromMask,
+			MoveList moves) {
+		return generate(side, board, Board.getBitMapForColor(board, side),
+				Board.getBitMapForColor(board, Board.oppositeSide(side)),
+				fromMask, ALL, moves);
+	}
+
+	/**
+	 * Add the legal captures and promotions, the other legal moves or all of
+	 * them on a flat board.
+	 *
+	 * @return the number of moves added
+	 */
+
+	public static int generate(int side, long[] board, long own, long enemy,
+			long fromMask, int kind, MoveList moves) {
+		return generate(side, board, Board.getFlatIndex(side, 0), board,
+				Board.getFlatIndex(Board.oppositeSide(side), 0), own, enemy,
+				fromMask, kind, moves);
+	}
+
+	/**
+	 * The bitmaps of a side are read from an array at an offset, so the same
+	 * code works for a row of a long[][] board and for a flat board.
+	 */
+
+	private static int generate(int side, long[] us, int u, long[] them,
+			int t, long own, long enemy, long fromMask, int kind,
+			MoveList moves) {
+		// The squares pieces and pawns may move to for the kind of moves
+		long toMask = -1L;
+		long pawnMask = -1L;
+		if (kind == CAPTURES) {
+			toMask = enemy;
+			pawnMask = enemy | PROMOTION_RANKS;
+		} else if (kind == QUIETS) {
+			toMask = ~enemy;
+			pawnMask = ~(enemy | PROMOTION_RANKS);
+		}
+
+		int size = moves.size();
+		int opposite = Board.oppositeSide(side);
+		long occupied = own | enemy;
+
+		long kingBitmap = us[u + Commons.PieceType.KING];
+		int king = Long.numberOfTrailingZeros(kingBitmap);
+		long enemyRooks = them[t + Commons.PieceType.ROOK]
+				| them[t + Commons.PieceType.QUEEN];
+		long enemyBishops = them[t + Commons.PieceType.BISHOP]
+				| them[t + Commons.PieceType.QUEEN];
+
+		long checkers = 0;
+		if (kingBitmap != 0) {
+			checkers = Board.getAttackersTo(them, t, king, occupied, opposite);
+		}
+
+		// King moves
+		for (long b = kingBitmap & fromMask; b != 0; b &= (b - 1)) {
+			int from = Long.numberOfTrailingZeros(b);
+			long danger = getAttackedSquares(opposite, them, t, occupied
+					& ~Board.masks[from]);
+
+			addMoves(from, Commons.PieceType.KING,
+					Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KING][from]
+							& ~own & ~danger & toMask, moves);
+
+			if (checkers == 0 && from == king && kind != CAPTURES) {
+				addCastles(side, us, u, king, occupied, danger, moves);
+			}
+		}
+
+		// Only the king can get out of a double check
+		if ((checkers & (checkers - 1)) != 0) {
+			return moves.size() - size;
+		}
+
+		// Other pieces has to capture or block the piece giving check
+		long checkMask = -1L;
+		if (checkers != 0) {
+			checkMask = checkers
+					| Commons.Bitmaps.BETWEENMAP[king][Long
+							.numberOfTrailingZeros(checkers)];
+		}
+		long targets = ~own & checkMask & toMask;
+
+		// Pinned pieces can only move on the line between the king and the
+		// piece pinning it
+		long pinned = 0;
+		if (kingBitmap != 0) {
+			for (long b = (SlidingAttacks.getRookAttacks(king, enemy) & enemyRooks)
+					| (SlidingAttacks.getBishopAttacks(king, enemy) & enemyBishops); b != 0; b &= (b - 1)) {
+				int pinner = Long.numberOfTrailingZeros(b);
+				long between = Commons.Bitmaps.BETWEENMAP[king][pinner];
+				long piece = between & occupied;
+
+				if (piece == 0 || (piece & (piece - 1)) != 0
+						|| (piece & own) == 0) {
+					continue;
+				}
+
+				pinned |= piece;
+				if ((piece & fromMask) != 0) {
+					long allowed = (between | Board.masks[pinner]) & checkMask;
+					addPinnedMoves(Long.numberOfTrailingZeros(piece), side, us,
+							u, occupied, enemy, allowed & toMask, allowed
+									& pawnMask, moves);
+				}
+			}
+		}
+
+		long movable = fromMask & ~pinned;
+
+		for (long b = us[u + Commons.PieceType.KNIGHT] & movable; b != 0; b &= (b - 1)) {
+			int from = Long.numberOfTrailingZeros(b);
+			addMoves(from, Commons.PieceType.KNIGHT,
+					Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KNIGHT][from]
+							& targets, moves);
+		}
+
+		for (long b = us[u + Commons.PieceType.BISHOP] & movable; b != 0; b &= (b - 1)) {
+			int from = Long.numberOfTrailingZeros(b);
+			addMoves(from, Commons.PieceType.BISHOP,
+					SlidingAttacks.getBishopAttacks(from, occupied) & targets,
+					moves);
+		}
+
+		for (long b = us[u + Commons.PieceType.ROOK] & movable; b != 0; b &= (b - 1)) {
+			int from = Long.numberOfTrailingZeros(b);
+			addMoves(from, Commons.PieceType.ROOK,
+					SlidingAttacks.getRookAttacks(from, occupied) & targets,
+					moves);
+		}
+
+		for (long b = us[u + Commons.PieceType.QUEEN] & movable; b != 0; b &= (b - 1)) {
+			int from = Long.numberOfTrailingZeros(b);
+			addMoves(from, Commons.PieceType.QUEEN,
+					SlidingAttacks.getQueenAttacks(from, occupied) & targets,
+					moves);
+		}
+
+		addAllPawnMoves(us[u + Commons.PieceType.PAWN] & movable, side,
+				occupied, enemy, checkMask & pawnMask, moves);
+
+		// En passant, the square is kept in the state row of the side that
+		// made the double push
+		long enPassant = them[t + 6]
+				& (opposite == Commons.Color.WHITE ? Commons.Bitmaps.RANKS[2]
+						: Commons.Bitmaps.RANKS[5]);
+		if (enPassant != 0 && kind != QUIETS) {
+			int to = Long.numberOfTrailingZeros(enPassant);
+			int captured = side == Commons.Color.WHITE ? to + 8 : to - 8;
+
+			for (long b = Commons.Bitmaps.PAWN_ATTACKS[opposite][to]
+					& us[u + Commons.PieceType.PAWN] & fromMask; b != 0; b &= (b - 1)) {
+				int from = Long.numberOfTrailingZeros(b);
+
+				if ((checkMask & (enPassant | Board.masks[captured])) == 0) {
+					continue;
+				}
+
+				// Two pawns leave the rank at once so the usual pin test is
+				// not enough, look for sliders hitting the king afterwards.
+				long after = (occupied & ~Board.masks[from] & ~Board.masks[captured])
+						| enPassant;
+				if (kingBitmap != 0
+						&& ((SlidingAttacks.getRookAttacks(king, after) & enemyRooks) != 0 || (SlidingAttacks
+								.getBishopAttacks(king, after) & enemyBishops) != 0)) {
+					continue;
+				}
+
+				moves.add(Move.encode(from, to, Commons.PieceType.PAWN));
+			}
+		}
+
+		return moves.size() - size;
+	}
+
+	/**
+	 * Get all squares attacked by a side.
+	 *
+	 * @param side
+	 *            the attacking side
+	 * @param pieces
+	 *            the bitmaps of the attacking side, board[side]
+	 * @param occupied
+	 *            the occupied squares sliders are blocked by
+	 * @return a bitmap of the attacked squares
+	 */
+
+	public static long getAttackedSquares(int side, long[] pieces,
+			long occupied) {
+		return getAttackedSquares(side, pieces, 0, occupied);
+	}
+
+	/**
+	 * Get all squares attacked by a side when its bitmaps start at an offset
+	 * in an array.
+	 *
+	 * @param offset
+	 *            where the bitmaps of the side start, 0 for a row of a
+	 *            long[][] board or Board.getFlatIndex(side, 0) for a flat
+	 *            board
+	 */
+
+	public static long getAttackedSquares(int side, long[] board,
+			int offset, long occupied) {
+		long pawns = board[offset + Commons.PieceType.PAWN];
+		long attacked;
+
+		if (side == Commons.Color.WHITE) {
+			attacked = ((pawns & NOT_FILE_A) >>> 9)
+					| ((pawns & NOT_FILE_H) >>> 7);
+		} else {
+			attacked = ((pawns & NOT_FILE_A) << 7)
+					| ((pawns & NOT_FILE_H) << 9);
+		}
+
+		for (long b = board[offset + Commons.PieceType.KNIGHT]; b != 0; b &= (b - 1)) {
+			attacked |= Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KNIGHT][Long
+					.numberOfTrailingZeros(b)];
+		}
+
+		for (long b = board[offset + Commons.PieceType.KING]; b != 0; b &= (b - 1)) {
+			attacked |= Commons.Bitmaps.ATTACKMAP[Commons.PieceType.KING][Long
+					.numberOfTrailingZeros(b)];
+		}
+
+		for (long b = board[offset + Commons.PieceType.ROOK]
+				| board[offset + Commons.PieceType.QUEEN]; b != 0; b &= (b - 1)) {
+			attacked |= SlidingAttacks.getRookAttacks(
+					Long.numberOfTrailingZeros(b), occupied);
+		}
+
+		for (long b = board[offset + Commons.PieceType.BISHOP]
+				| board[offset + Commons.PieceType.QUEEN]; b != 0; b &= (b - 1)) {
+			attacked |= SlidingAttacks.getBishopAttacks(
+					Long.numberOfTrailingZeros(b), occupied);
+		}
+
+		return attacked;
+	}
+
+	private static void addMoves(int from, int type, long targets,
+			MoveList moves) {
+		for (; targets != 0; targets &= (targets - 1)) {
+			moves.add(Move.encode(from, Long.numberOfTrailingZeros(targets),
+					type));
+		}
+	}
+
+	/**
+	 * Add the moves of a pinned piece, allowed is the line it is pinned on
+	 * and pawnAllowed the same for a pawn. Knights can never move when
+	 * pinned.
+	 */
+
+	private static void addPinnedMoves(int from, int side, long[] us,
+			int u, long occupied, long enemy, long allowed, long pawnAllowed,
+			MoveList moves) {
+		long mask = Board.masks[from];
+
+		if ((us[u + Commons.PieceType.PAWN] & mask) != 0) {
+			addPawnMoves(from, side, occupied, enemy, pawnAllowed, moves);
+		} else if ((us[u + Commons.PieceType.BISHOP] & mask) != 0) {
+			addMoves(from, Commons.PieceType.BISHOP,
+					SlidingAttacks.getBishopAttacks(from, occupied) & allowed,
+					moves);
+		} else if ((us[u + Commons.PieceType.ROOK] & mask) != 0) {
+			addMoves(from, Commons.PieceType.ROOK,
+					SlidingAttacks.getRookAttacks(from, occupied) & allowed,
+					moves);
+		} else if ((us[u + Commons.PieceType.QUEEN] & mask) != 0) {
+			addMoves(from, Commons.PieceType.QUEEN,
+					SlidingAttacks.getQueenAttacks(from, occupied) & allowed,
+					moves);
+		}
+	}
+
+	/**
+	 * Add pushes and captures of all pawns that are not pinned at once. The
+	 * whole pawn bitmap is shifted one way for every kind of move, and the
+	 * squares it lands on give the moves with the from square the same
+	 * distance back. En passant is handled by the caller.
+	 */
+
+	private static void addAllPawnMoves(long pawns, int side, long occupied,
+			long enemy, long allowed, MoveList moves) {
+		// A pawn on the first or last rank is not a real pawn
+		pawns &= ~PROMOTION_RANKS;
+		long empty = ~occupied;
+
+		if (side == Commons.Color.WHITE) {
+			long single = (pawns >>> 8) & empty;
+			long twice = ((single & Commons.Bitmaps.RANKS[2]) >>> 8) & empty;
+			addPawnTargets(((pawns & NOT_FILE_A) >>> 9) & enemy & allowed, 9,
+					moves);
+			addPawnTargets(((pawns & NOT_FILE_H) >>> 7) & enemy & allowed, 7,
+					moves);
+			addPawnTargets(single & allowed, 8, moves);
+			addPawnTargets(twice & allowed, 16, moves);
+		} else {
+			long single = (pawns << 8) & empty;
+			long twice = ((single & Commons.Bitmaps.RANKS[5]) << 8) & empty;
+			addPawnTargets(((pawns & NOT_FILE_A) << 7) & enemy & allowed, -7,
+					moves);
+			addPawnTargets(((pawns & NOT_FILE_H) << 9) & enemy & allowed, -9,
+					moves);
+			addPawnTargets(single & allowed, -8, moves);
+			addPawnTargets(twice & allowed, -16, moves);
+		}
+	}
+
+	/**
+	 * Add a pawn move to every target square, with promotions on the last
+	 * rank.
+	 *
+	 * @param back
+	 *            what to add to a target square to get the from square
+	 */
+
+	private static void addPawnTargets(long targets, int back, MoveList moves) {
+		for (long b = targets & ~PROMOTION_RANKS; b != 0; b &= (b - 1)) {
+			int to = Long.numberOfTrailingZeros(b);
+			moves.add(Move.encode(to + back, to, Commons.PieceType.PAWN));
+		}
+
+		for (long b = targets & PROMOTION_RANKS; b != 0; b &= (b - 1)) {
+			int to = Long.numberOfTrailingZeros(b);
+			addPromotions(to + back, to, moves);
+		}
+	}
+
+	/**
+	 * Add pushes and captures of a pawn that ends on an allowed square, for
+	 * pinned pawns. En passant is handled by the caller.
+	 */
+
+	private static void addPawnMoves(int from, int side, long occupied,
+			long enemy, long allowed, MoveList moves) {
+		// A pawn on the first or last rank is not a real pawn
+		if ((Board.masks[from] & PROMOTION_RANKS) != 0) {
+			return;
+		}
+
+		long targets = Commons.Bitmaps.PAWN_ATTACKS[side][from] & enemy;
+
+		if (side == Commons.Color.WHITE) {
+			if ((occupied & Board.masks[from - 8]) == 0) {
+				targets |= Board.masks[from - 8];
+				if ((Board.masks[from] & Commons.Bitmaps.RANKS[1]) != 0
+						&& (occupied & Board.masks[from - 16]) == 0) {
+					targets |= Board.masks[from - 16];
+				}
+			}
+		} else {
+			if ((occupied & Board.masks[from + 8]) == 0) {
+				targets |= Board.masks[from + 8];
+				if ((Board.masks[from] & Commons.Bitmaps.RANKS[6]) != 0
+						&& (occupied & Board.masks[from + 16]) == 0) {
+					targets |= Board.masks[from + 16];
+				}
+			}
+		}
+
+		targets &= allowed;
+
+		if ((targets & PROMOTION_RANKS) == 0) {
+			addMoves(from, Commons.PieceType.PAWN, targets, moves);
+			return;
+		}
+
+		for (; targets != 0; targets &= (targets - 1)) {
+			addPromotions(from, Long.numberOfTrailingZeros(targets), moves);
+		}
+	}
+
+	private static void addPromotions(int from, int to, MoveList moves) {
+		moves.add(Move.encode(from, to, Commons.PieceType.QUEEN,
+				Move.FLAG_PROMOTION));
+		moves.add(Move.encode(from, to, Commons.PieceType.ROOK,
+				Move.FLAG_PROMOTION));
+		moves.add(Move.encode(from, to, Commons.PieceType.BISHOP,
+				Move.FLAG_PROMOTION));
+		moves.add(Move.encode(from, to, Commons.PieceType.KNIGHT,
+				Move.FLAG_PROMOTION));
+	}
+
+	/**
+	 * Add castling moves. The king and the rook can not have moved, the
+	 * squares between them has to be empty and the king can not pass or land
+	 * on an attacked square. The caller makes sure we are not in check.
+	 */
+
+	private static void addCastles(int side, long[] us, int u, int king,
+			long occupied, long danger, MoveList moves) {
+		int rook = side == Commons.Color.WHITE ? 56 : 0;
+
+		if (king != rook + 4 || (us[u + 6] & Board.masks[king]) == 0) {
+			return;
+		}
+
+		long rooks = us[u + 6] & us[u + Commons.PieceType.ROOK];
+
+		// Queenside
+		if ((rooks & Board.masks[rook]) != 0
+				&& (Commons.Bitmaps.BETWEENMAP[rook][king] & occupied) == 0
+				&& (danger & (Board.masks[rook + 2] | Board.masks[rook + 3])) == 0) {
+			moves.add(Move.encode(king, rook + 2, Commons.PieceType.KING,
+					Move.FLAG_CASTLE));
+		}
+
+		// Kingside
+		rook += 7;
+		if ((rooks & Board.masks[rook]) != 0
+				&& (Commons.Bitmaps.BETWEENMAP[king][rook] & occupied) == 0
+				&& (danger & (Board.masks[rook - 1] | Board.masks[rook - 2])) == 0) {
+			moves.add(Move.encode(king, rook - 1, Commons.PieceType.KING,
+					Move.FLAG_CASTLE));
+		}
+	}
+
+}
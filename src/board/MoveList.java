@@ -0,0 +1,71 @@
+package board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reusable buffer of moves packed as ints (see Move.encode). The move
+ * generator appends to it and clearing it only resets the size, so one list
+ * can be used for every position without creating any garbage.
+ */
+
+public class MoveList {
+
+	// There is never more than 218 legal moves in a chess position.
+	public static final int MAX_MOVES = 256;
+
+	private final int[] moves;
+	private int size;
+
+	public MoveList() {
+		this(MAX_MOVES);
+	}
+
+	public MoveList(int capacity) {
+		this.moves = new int[capacity];
+	}
+
+	public void add(int move) {
+		moves[size++] = move;
+	}
+
+	public int get(int index) {
+		return moves[index];
+	}
+
+	public void swap(int i, int j) {
+		int move = moves[i];
+		moves[i] = moves[j];
+		moves[j] = move;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Get the moves as Move objects. This creates garbage so it should not be
+	 * used in hot code.
+	 *
+	 * @param from
+	 *            the first index to convert
+	 * @return a list with the moves from index and out.
+	 */
+
+	public List<Move> toList(int from) {
+		List<Move> list = new ArrayList<>(size - from);
+		for (int i = from; i < size; i++) {
+			list.add(Move.decode(moves[i]));
+		}
+		return list;
+	}
+
+}
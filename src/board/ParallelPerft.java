@@ -0,0 +1,150 @@
+package board;
+
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft on many threads. Every move above SPLIT_DEPTH becomes a task on a
+ * ForkJoinPool with its own copy of the board, so idle threads steal whole
+ * subtrees from busy ones and no board is shared between threads. The last
+ * plies of a subtree are counted by one thread with Perft.
+ */
+
+public class ParallelPerft {
+
+	// Subtrees this deep or less are not split any more
+	private static final int SPLIT_DEPTH = 3;
+
+	private final ForkJoinPool pool;
+	private final PerftCache cache;
+
+	public ParallelPerft(int threads) {
+		this(threads, null);
+	}
+
+	/**
+	 * @param threads
+	 *            the number of threads to count on, at least 1
+	 * @param cache
+	 *            a cache shared by all threads, or null to count everything
+	 */
+
+	public ParallelPerft(int threads, PerftCache cache) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1: "
+					+ threads);
+		}
+		this.pool = new ForkJoinPool(threads);
+		this.cache = cache;
+	}
+
+	/**
+	 * Count the leaf nodes to a depth, see Perft.perft.
+	 *
+	 * @param board
+	 *            the board to count from, it is not changed
+	 */
+
+	public long perft(long[][] board, int side, int depth) {
+		return pool.invoke(new Task(Board.deepCopy2DArray(board), side, depth));
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private class Task extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[][] board;
+		private final int side;
+		private final int depth;
+
+		Task(long[][] board, int side, int depth) {
+			this.board = board;
+			this.side = side;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Long compute() {
+			if (depth <= SPLIT_DEPTH) {
+				return new Perft(depth, cache).count(
+						new Position(board, side), side, depth);
+			}
+
+			MoveList moves = new MoveList();
+			Board.getValidMovesForColor(side, board, moves);
+
+			Task[] tasks = new Task[moves.size()];
+			for (int i = 0; i < moves.size(); i++) {
+				long[][] child = Board.copyBoard(board, new long[2][7]);
+				Board.move(moves.get(i), side, child);
+				tasks[i] = new Task(child, Board.oppositeSide(side),
+						depth - 1);
+			}
+			invokeAll(tasks);
+
+			long nodes = 0;
+			for (Task task : tasks) {
+				nodes += task.join();
+			}
+			return nodes;
+		}
+	}
+
+	/**
+	 * Count a position on one thread and then on 1, 2, 4 and so on up to
+	 * maxThreads threads, printing the time of each and the speedup over the
+	 * run on one thread in the pool. The first count also warms up the JIT.
+	 *
+	 * @param cacheMegabytes
+	 *            the size of the shared perft cache, 0 for no cache
+	 * @return true if all the counts were the same as the one thread count
+	 */
+
+	public static boolean runScaling(long[][] board, int side, int depth,
+			int maxThreads, int cacheMegabytes, PrintStream out) {
+		if (maxThreads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1: "
+					+ maxThreads);
+		}
+		long time = System.nanoTime();
+		long expected = Perft.perft(board, side, depth);
+		long sequential = System.nanoTime() - time;
+
+		out.printf("sequential %12d nodes %8d ms %12d nps%n", expected,
+				sequential / 1000000,
+				Perft.nodesPerSecond(expected, sequential));
+
+		boolean ok = true;
+		long single = 0;
+		for (int threads = 1;; threads = Math.min(threads * 2, maxThreads)) {
+			ParallelPerft perft = new ParallelPerft(threads,
+					cacheMegabytes > 0 ? new PerftCache(cacheMegabytes) : null);
+
+			time = System.nanoTime();
+			long nodes = perft.perft(board, side, depth);
+			time = System.nanoTime() - time;
+			perft.shutdown();
+
+			if (threads == 1) {
+				single = time;
+			}
+
+			ok &= nodes == expected;
+			out.printf("threads %2d %12d nodes %8d ms %12d nps %5.2fx %s%n",
+					threads, nodes, time / 1000000,
+					Perft.nodesPerSecond(nodes, time), (double) single / time,
+					nodes == expected ? "OK" : "FAIL");
+
+			if (threads == maxThreads) {
+				break;
+			}
+		}
+		return ok;
+	}
+
+}
@@ -0,0 +1,206 @@
+package board;
+
+import java.io.PrintStream;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth. The counts for
+ * the standard positions below are known, so this both checks that the
+ * move generator is right and measures how fast it is.
+ */
+
+public class Perft {
+
+	/**
+	 * A position with its known perft counts, counts[0] is depth 1.
+	 */
+
+	public static class Entry {
+		public final String name;
+		public final String fen;
+		public final long[] counts;
+
+		public Entry(String name, String fen, long... counts) {
+			this.name = name;
+			this.fen = fen;
+			this.counts = counts;
+		}
+	}
+
+	// https://www.chessprogramming.org/Perft_Results
+	public static final Entry[] POSITIONS = {
+			new Entry("start", Fen.START_POSITION, 20, 400, 8902, 197281,
+					4865609, 119060324),
+			new Entry(
+					"kiwipete",
+					"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+					48, 2039, 97862, 4085603, 193690690),
+			new Entry("position3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+					14, 191, 2812, 43238, 674624, 11030083, 178633661),
+			new Entry(
+					"position4",
+					"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+					6, 264, 9467, 422333, 15833292),
+			new Entry("position5",
+					"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+					44, 1486, 62379, 2103487, 89941194),
+			new Entry(
+					"position6",
+					"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+					46, 2079, 89890, 3894594, 164075551) };
+
+	private final MoveList[] moves;
+	private final UndoStack undo;
+	private final PerftCache cache;
+
+	public Perft(int maxDepth) {
+		this(maxDepth, null);
+	}
+
+	/**
+	 * @param cache
+	 *            a cache for the counts, or null to count everything
+	 */
+
+	public Perft(int maxDepth, PerftCache cache) {
+		this.cache = cache;
+		moves = new MoveList[maxDepth + 1];
+		for (int i = 0; i <= maxDepth; i++) {
+			moves[i] = new MoveList();
+		}
+		undo = new UndoStack(maxDepth + 1);
+	}
+
+	/**
+	 * Count the leaf nodes to a depth.
+	 *
+	 * @param board
+	 *            the board to count from, it is the same when we return.
+	 * @param side
+	 *            the side to move
+	 * @param depth
+	 *            the depth to count to
+	 * @return the number of leaf nodes
+	 */
+
+	public static long perft(long[][] board, int side, int depth) {
+		return new Perft(depth).count(new Position(board, side), side,
+				depth);
+	}
+
+	public long count(Position position, int side, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+
+		long key = position.getKey();
+		if (cache != null && depth > 1) {
+			long nodes = cache.probe(key, depth);
+			if (nodes != -1) {
+				return nodes;
+			}
+		}
+
+		MoveList list = moves[depth];
+		list.clear();
+		Board.getValidMovesForColor(side, position, list);
+
+		// No need to make the moves on the last ply
+		if (depth == 1) {
+			return list.size();
+		}
+
+		long nodes = 0;
+		int opposite = Board.oppositeSide(side);
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			position.makeMove(move, side, undo);
+			nodes += count(position, opposite, depth - 1);
+			position.unmakeMove(move, side, undo);
+		}
+
+		if (cache != null) {
+			cache.store(key, depth, nodes);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Count the leaf nodes below every root move and print them.
+	 *
+	 * @return the total number of leaf nodes
+	 */
+
+	public static long divide(long[][] board, int side, int depth,
+			PrintStream out) {
+		Perft perft = new Perft(depth);
+		Position position = new Position(board, side);
+		MoveList root = new MoveList();
+		Board.getValidMovesForColor(side, position, root);
+
+		long total = 0;
+		for (int i = 0; i < root.size(); i++) {
+			int move = root.get(i);
+			position.makeMove(move, side, perft.undo);
+			long nodes = perft.count(position, Board.oppositeSide(side),
+					depth - 1);
+			position.unmakeMove(move, side, perft.undo);
+
+			out.println(Move.toAlgebraic(move) + ": " + nodes);
+			total += nodes;
+		}
+
+		out.println();
+		out.println("Moves: " + root.size());
+		out.println("Nodes: " + total);
+		return total;
+	}
+
+	/**
+	 * Run all the standard positions to a depth and compare with the known
+	 * counts.
+	 *
+	 * @param maxDepth
+	 *            the deepest depth to run, positions with fewer known counts
+	 *            stop earlier.
+	 * @param out
+	 *            where to print the results
+	 * @return true if every count was right
+	 */
+
+	public static boolean runSuite(int maxDepth, PrintStream out) {
+		boolean ok = true;
+		long totalNodes = 0;
+		long totalTime = 0;
+		long[][] board = new long[2][7];
+
+		for (Entry entry : POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+
+			for (int depth = 1; depth <= Math.min(maxDepth,
+					entry.counts.length); depth++) {
+				long time = System.nanoTime();
+				long nodes = perft(board, side, depth);
+				time = System.nanoTime() - time;
+
+				boolean correct = nodes == entry.counts[depth - 1];
+				ok &= correct;
+				totalNodes += nodes;
+				totalTime += time;
+
+				out.printf("%-10s depth %d %12d nodes %8d ms %12d nps %s%n",
+						entry.name, depth, nodes, time / 1000000,
+						nodesPerSecond(nodes, time), correct ? "OK"
+								: "FAIL, expected " + entry.counts[depth - 1]);
+			}
+		}
+
+		out.printf("Total %d nodes in %d ms, %d nps%n", totalNodes,
+				totalTime / 1000000, nodesPerSecond(totalNodes, totalTime));
+		return ok;
+	}
+
+	public static long nodesPerSecond(long nodes, long nanos) {
+		return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+	}
+
+}
@@ -0,0 +1,66 @@
+package board;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the perft count of positions by their Zobrist key and depth, so
+ * positions reached again through other move orders are not counted again.
+ * The cache can be shared by many threads, every entry is kept as key ^
+ * nodes and nodes so an entry half written by another thread is never
+ * taken as a hit.
+ */
+
+public class PerftCache {
+
+	private final AtomicLongArray table;
+	private final int mask;
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param megabytes
+	 *            the size of the cache, rounded down to a power of two
+	 */
+
+	public PerftCache(int megabytes) {
+		if (megabytes < 1 || megabytes > 1024) {
+			throw new IllegalArgumentException("Size must be 1 to 1024 MB: "
+					+ megabytes);
+		}
+
+		int entries = (Integer.highestOneBit(megabytes) << 20) / 16;
+		table = new AtomicLongArray(entries * 2);
+		mask = entries - 1;
+	}
+
+	/**
+	 * Look up a count.
+	 *
+	 * @return the number of leaf nodes or -1 if it is not in the cache
+	 */
+
+	public long probe(long key, int depth) {
+		key = getKey(key, depth);
+		int i = ((int) key & mask) * 2;
+
+		long nodes = table.get(i + 1);
+		if (nodes != 0 && (table.get(i) ^ nodes) == key) {
+			return nodes;
+		}
+		return -1;
+	}
+
+	public void store(long key, int depth, long nodes) {
+		key = getKey(key, depth);
+		int i = ((int) key & mask) * 2;
+
+		table.lazySet(i + 1, nodes);
+		table.lazySet(i, key ^ nodes);
+	}
+
+	private static long getKey(long key, int depth) {
+		// The same position at another depth is another entry
+		return key ^ depth * 0x9E3779B97F4A7C15L;
+	}
+
+}
@@ -0,0 +1,133 @@
+package board;
+
+import utils.Commons;
+
+/**
+ * Values of the pieces and how much better or worse they are on every
+ * square, once for the middlegame and once for the endgame. Position keeps
+ * the sums of these up to date by adding and subtracting only what a move
+ * changes, like it does with the Zobrist key.
+ *
+ * All values are from the side of white, the ones of black pieces are
+ * negative. The game phase goes from MAX_PHASE with all pieces on the board
+ * down to 0 with only kings and pawns left.
+ */
+
+public class PieceSquareTables {
+
+	// Indexed by Commons.PieceType
+	public static final int[] VALUES = { 0, 900, 500, 330, 320, 100 };
+	public static final int[] PHASES = { 0, 4, 2, 1, 1, 0 };
+
+	public static final int MAX_PHASE = 24;
+
+	// [color][type], the values of VALUES negative for black
+	public static final int[][] MATERIAL = new int[2][6];
+
+	// [color][type][square]
+	public static final int[][][] MIDDLEGAME = new int[2][6][64];
+	public static final int[][][] ENDGAME = new int[2][6][64];
+
+	// As seen by white from a8 to h1, the same as the squares
+	private static final int[] KING_MIDDLEGAME = {
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-30, -40, -40, -50, -50, -40, -40, -30,
+		-20, -30, -30, -40, -40, -30, -30, -20,
+		-10, -20, -20, -20, -20, -20, -20, -10,
+		 20,  20,   0,   0,   0,   0,  20,  20,
+		 20,  30,  10,   0,   0,  10,  30,  20 };
+
+	private static final int[] KING_ENDGAME = {
+		-50, -40, -30, -20, -20, -30, -40, -50,
+		-30, -20, -10,   0,   0, -10, -20, -30,
+		-30, -10,  20,  30,  30,  20, -10, -30,
+		-30, -10,  30,  40,  40,  30, -10, -30,
+		-30, -10,  30,  40,  40,  30, -10, -30,
+		-30, -10,  20,  30,  30,  20, -10, -30,
+		-30, -30,   0,   0,   0,   0, -30, -30,
+		-50, -30, -30, -30, -30, -30, -30, -50 };
+
+	private static final int[] QUEEN = {
+		-20, -10, -10,  -5,  -5, -10, -10, -20,
+		-10,   0,   0,   0,   0,   0,   0, -10,
+		-10,   0,   5,   5,   5,   5,   0, -10,
+		 -5,   0,   5,   5,   5,   5,   0,  -5,
+		  0,   0,   5,   5,   5,   5,   0,  -5,
+		-10,   5,   5,   5,   5,   5,   0, -10,
+		-10,   0,   5,   0,   0,   0,   0, -10,
+		-20, -10, -10,  -5,  -5, -10, -10, -20 };
+
+	private static final int[] ROOK = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		  5,  10,  10,  10,  10,  10,  10,   5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		 -5,   0,   0,   0,   0,   0,   0,  -5,
+		  0,   0,   0,   5,   5,   0,   0,   0 };
+
+	private static final int[] BISHOP = {
+		-20, -10, -10, -10, -10, -10, -10, -20,
+		-10,   0,   0,   0,   0,   0,   0, -10,
+		-10,   0,   5,  10,  10,   5,   0, -10,
+		-10,   5,   5,  10,  10,   5,   5, -10,
+		-10,   0,  10,  10,  10,  10,   0, -10,
+		-10,  10,  10,  10,  10,  10,  10, -10,
+		-10,   5,   0,   0,   0,   0,   5, -10,
+		-20, -10, -10, -10, -10, -10, -10, -20 };
+
+	private static final int[] KNIGHT = {
+		-50, -40, -30, -30, -30, -30, -40, -50,
+		-40, -20,   0,   0,   0,   0, -20, -40,
+		-30,   0,  10,  15,  15,  10,   0, -30,
+		-30,   5,  15,  20,  20,  15,   5, -30,
+		-30,   0,  15,  20,  20,  15,   0, -30,
+		-30,   5,  10,  15,  15,  10,   5, -30,
+		-40, -20,   0,   5,   5,   0, -20, -40,
+		-50, -40, -30, -30, -30, -30, -40, -50 };
+
+	private static final int[] PAWN_MIDDLEGAME = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		 50,  50,  50,  50,  50,  50,  50,  50,
+		 10,  10,  20,  30,  30,  20,  10,  10,
+		  5,   5,  10,  25,  25,  10,   5,   5,
+		  0,   0,   0,  20,  20,   0,   0,   0,
+		  5,  -5, -10,   0,   0, -10,  -5,   5,
+		  5,  10,  10, -20, -20,  10,  10,   5,
+		  0,   0,   0,   0,   0,   0,   0,   0 };
+
+	private static final int[] PAWN_ENDGAME = {
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		 80,  80,  80,  80,  80,  80,  80,  80,
+		 50,  50,  50,  50,  50,  50,  50,  50,
+		 30,  30,  30,  30,  30,  30,  30,  30,
+		 20,  20,  20,  20,  20,  20,  20,  20,
+		 10,  10,  10,  10,  10,  10,  10,  10,
+		 10,  10,  10,  10,  10,  10,  10,  10,
+		  0,   0,   0,   0,   0,   0,   0,   0 };
+
+	static {
+		int[][] middlegame = { KING_MIDDLEGAME, QUEEN, ROOK, BISHOP, KNIGHT,
+				PAWN_MIDDLEGAME };
+		int[][] endgame = { KING_ENDGAME, QUEEN, ROOK, BISHOP, KNIGHT,
+				PAWN_ENDGAME };
+
+		for (int type = 0; type < 6; type++) {
+			MATERIAL[Commons.Color.WHITE][type] = VALUES[type];
+			MATERIAL[Commons.Color.BLACK][type] = -VALUES[type];
+
+			for (int square = 0; square < 64; square++) {
+				// Black sees the board upside down
+				int mirrored = square ^ 56;
+				MIDDLEGAME[Commons.Color.WHITE][type][square] = middlegame[type][square];
+				MIDDLEGAME[Commons.Color.BLACK][type][square] = -middlegame[type][mirrored];
+				ENDGAME[Commons.Color.WHITE][type][square] = endgame[type][square];
+				ENDGAME[Commons.Color.BLACK][type][square] = -endgame[type][mirrored];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,381 @@
+package board;
+
+import utils.Commons;
+
+/**
+ * A board in the usual long[2][7] layout together with the squares occupied
+ * by each color and by both. The occupied squares are updated every time a
+ * piece is set, removed or moved through the position, so they never have
+ * to be found again by going through all the piece bitmaps. The same goes
+ * for the Zobrist key of the position, the side to move and the sums of the
+ * material, the piece-square values and the game phase, see
+ * PieceSquareTables.
+ *
+ * The board array is not copied, changing it directly without going through
+ * the position means refresh has to be called.
+ */
+
+public class Position {
+
+	private final long[][] board;
+	private final long[] occupancy = new long[2];
+	private long occupied;
+	private long key;
+	private int side;
+
+	// From the side of white, see PieceSquareTables
+	private int material;
+	private int middlegame;
+	private int endgame;
+	private int phase;
+
+	/**
+	 * Create a position in the start position.
+	 */
+
+	public Position() {
+		this(Board.initBitBoard());
+	}
+
+	public Position(long[][] board) {
+		this(board, Commons.Color.WHITE);
+	}
+
+	public Position(long[][] board, int side) {
+		this.board = board;
+		this.side = side;
+		refresh();
+	}
+
+	/**
+	 * Find the occupied squares, the key and the evaluation sums again from
+	 * the piece bitmaps.
+	 */
+
+	public void refresh() {
+		occupancy[Commons.Color.BLACK] = Board.getBitMapForColor(board,
+				Commons.Color.BLACK);
+		occupancy[Commons.Color.WHITE] = Board.getBitMapForColor(board,
+				Commons.Color.WHITE);
+		occupied = occupancy[Commons.Color.BLACK]
+				| occupancy[Commons.Color.WHITE];
+		key = Zobrist.getKey(board, side);
+
+		material = 0;
+		middlegame = 0;
+		endgame = 0;
+		phase = 0;
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 6; type++) {
+				for (long b = board[color][type]; b != 0; b &= (b - 1)) {
+					updatePiece(color, type,
+							Long.numberOfTrailingZeros(b), 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the occupied squares and the key again with another side to move.
+	 */
+
+	public void refresh(int side) {
+		this.side = side;
+		refresh();
+	}
+
+	public long[][] getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return the bitmap of all occupied squares.
+	 */
+
+	public long getBitMap() {
+		return occupied;
+	}
+
+	/**
+	 * @return the bitmap of the squares occupied by a color.
+	 */
+
+	public long getBitMapForColor(int color) {
+		return occupancy[color];
+	}
+
+	/**
+	 * @return the Zobrist key of the position.
+	 */
+
+	public long getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the side to move, the other side of the last one that moved.
+	 */
+
+	public int getSide() {
+		return side;
+	}
+
+	/**
+	 * @return the value of the pieces of white minus those of black.
+	 */
+
+	public int getMaterial() {
+		return material;
+	}
+
+	/**
+	 * @return the middlegame piece-square values of white minus those of
+	 *         black, without the material.
+	 */
+
+	public int getMiddlegame() {
+		return middlegame;
+	}
+
+	/**
+	 * @return the endgame piece-square values of white minus those of black,
+	 *         without the material.
+	 */
+
+	public int getEndgame() {
+		return endgame;
+	}
+
+	/**
+	 * @return the game phase, from PieceSquareTables.MAX_PHASE at the start
+	 *         down to 0 with only kings and pawns left. Promotions can take
+	 *         it past MAX_PHASE.
+	 */
+
+	public int getPhase() {
+		return phase;
+	}
+
+	public int getPieceAtSquare(int square, int color) {
+		if ((occupancy[color] & Board.masks[square]) == 0) {
+			return -1;
+		}
+		return Board.getPieceAtSquare(board, square, color);
+	}
+
+	public void setPieceAtSquare(int square, int type, int color) {
+		if ((board[color][type] & Board.masks[square]) == 0) {
+			key ^= Zobrist.PIECES[color][type][square];
+			updatePiece(color, type, square, 1);
+		}
+		Board.setPieceAtSquare(board, square, type, color);
+		occupancy[color] |= Board.masks[square];
+		occupied |= Board.masks[square];
+	}
+
+	public void removePieceAtSquare(int square, int type, int color) {
+		if ((board[color][type] & Board.masks[square]) != 0) {
+			key ^= Zobrist.PIECES[color][type][square];
+			updatePiece(color, type, square, -1);
+		}
+		Board.removePieceAtSquare(board, square, type, color);
+		occupancy[color] &= ~Board.masks[square];
+		occupied = occupancy[Commons.Color.BLACK]
+				| occupancy[Commons.Color.WHITE];
+	}
+
+	public void removePieceAtSquare(int square) {
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 6; type++) {
+				if ((board[color][type] & Board.masks[square]) != 0) {
+					key ^= Zobrist.PIECES[color][type][square];
+					updatePiece(color, type, square, -1);
+				}
+			}
+		}
+		Board.removePieceAtSquare(board, square);
+		occupancy[Commons.Color.BLACK] &= ~Board.masks[square];
+		occupancy[Commons.Color.WHITE] &= ~Board.masks[square];
+		occupied &= ~Board.masks[square];
+	}
+
+	/**
+	 * Just moves a piece not checking anything, see Board.move.
+	 */
+
+	public void move(int move, int side) {
+		long black = board[Commons.Color.BLACK][6];
+		long white = board[Commons.Color.WHITE][6];
+		int square = getCapturedSquare(move, side);
+		int captured = square == -1 ? -1 : Board.getPieceAtSquare(board,
+				square, Board.oppositeSide(side)) | square << 3;
+
+		Board.move(move, side, board);
+		updateOccupancy(move, side, square);
+		updateKey(move, side, captured, black, white);
+		updateEvaluation(move, side, captured, 1);
+	}
+
+	/**
+	 * Make a move and push what is needed to take it back, see
+	 * Board.makeMove.
+	 */
+
+	public void makeMove(int move, int side, UndoStack undo) {
+		long key = this.key;
+		Board.makeMove(move, side, board, undo);
+
+		int i = undo.size() - 1;
+		int captured = undo.captured[i];
+		undo.keys[i] = key;
+		updateOccupancy(move, side, captured == -1 ? -1 : captured >>> 3);
+		updateKey(move, side, captured, undo.blackState[i],
+				undo.whiteState[i]);
+		updateEvaluation(move, side, captured, 1);
+	}
+
+	/**
+	 * Take back the last move made with makeMove.
+	 */
+
+	public void unmakeMove(int move, int side, UndoStack undo) {
+		int i = undo.size() - 1;
+		int captured = undo.captured[i];
+		key = undo.keys[i];
+		this.side = side;
+		Board.unmakeMove(move, side, board, undo);
+		updateOccupancy(move, side, captured == -1 ? -1 : captured >>> 3);
+		updateEvaluation(move, side, captured, -1);
+	}
+
+	/**
+	 * The pieces of the side moving change on the from and to squares (and
+	 * the rook squares when castling), the other side only changes on the
+	 * square of the captured piece. Doing and undoing a move flips the same
+	 * bits.
+	 */
+
+	private void updateOccupancy(int move, int side, int capturedSquare) {
+		int to = Move.toSquare(move);
+		long changed = Board.masks[Move.fromSquare(move)] | Board.masks[to];
+
+		if (Move.isCastle(move)) {
+			changed |= Board.masks[Board.getCastleRookFrom(to)]
+					| Board.masks[Board.getCastleRookTo(to)];
+		}
+
+		occupancy[side] ^= changed;
+		if (capturedSquare != -1) {
+			occupancy[Board.oppositeSide(side)] ^= Board.masks[capturedSquare];
+		}
+		occupied = occupancy[Commons.Color.BLACK]
+				| occupancy[Commons.Color.WHITE];
+	}
+
+	/**
+	 * Xor out the pieces and flags a move changed and xor in the new ones.
+	 *
+	 * @param captured
+	 *            the captured piece as type | square << 3, or -1
+	 * @param black
+	 *            the black state row before the move
+	 * @param white
+	 *            the white state row before the move
+	 */
+
+	private void updateKey(int move, int side, int captured, long black,
+			long white) {
+		int from = Move.fromSquare(move);
+		int to = Move.toSquare(move);
+		int type = Move.pieceType(move);
+		int moved = Move.isPromotion(move) ? Commons.PieceType.PAWN : type;
+
+		long k = key ^ Zobrist.PIECES[side][moved][from]
+				^ Zobrist.PIECES[side][type][to];
+
+		if (Move.isCastle(move)) {
+			k ^= Zobrist.PIECES[side][Commons.PieceType.ROOK][Board
+					.getCastleRookFrom(to)]
+					^ Zobrist.PIECES[side][Commons.PieceType.ROOK][Board
+							.getCastleRookTo(to)];
+		}
+
+		int next = Board.oppositeSide(side);
+		if (captured != -1) {
+			k ^= Zobrist.PIECES[next][captured & 0x7][captured >>> 3];
+		}
+
+		k ^= Zobrist.getStateKey(black, white)
+				^ Zobrist.getStateKey(board[Commons.Color.BLACK][6],
+						board[Commons.Color.WHITE][6]);
+
+		k ^= Zobrist.SIDE;
+		this.side = next;
+		key = k;
+	}
+
+	/**
+	 * Take out the piece-square values of what a move moved and captured and
+	 * add those of where it ended up, or the other way around to take the
+	 * move back.
+	 *
+	 * @param captured
+	 *            the captured piece as type | square << 3, or -1
+	 * @param sign
+	 *            1 to make the move, -1 to take it back
+	 */
+
+	private void updateEvaluation(int move, int side, int captured, int sign) {
+		int from = Move.fromSquare(move);
+		int to = Move.toSquare(move);
+		int type = Move.pieceType(move);
+		int moved = Move.isPromotion(move) ? Commons.PieceType.PAWN : type;
+
+		updatePiece(side, moved, from, -sign);
+		updatePiece(side, type, to, sign);
+
+		if (Move.isCastle(move)) {
+			updatePiece(side, Commons.PieceType.ROOK,
+					Board.getCastleRookFrom(to), -sign);
+			updatePiece(side, Commons.PieceType.ROOK,
+					Board.getCastleRookTo(to), sign);
+		}
+
+		if (captured != -1) {
+			updatePiece(Board.oppositeSide(side), captured & 0x7,
+					captured >>> 3, -sign);
+		}
+	}
+
+	/**
+	 * Add a piece to the evaluation sums, or take it out with a sign of -1.
+	 */
+
+	private void updatePiece(int color, int type, int square, int sign) {
+		material += sign * PieceSquareTables.MATERIAL[color][type];
+		middlegame += sign * PieceSquareTables.MIDDLEGAME[color][type][square];
+		endgame += sign * PieceSquareTables.ENDGAME[color][type][square];
+		phase += sign * PieceSquareTables.PHASES[type];
+	}
+
+	/**
+	 * Find the square of the piece a move captures, the same way as
+	 * Board.makeMove does.
+	 */
+
+	private int getCapturedSquare(int move, int side) {
+		int to = Move.toSquare(move);
+		int opposite = Board.oppositeSide(side);
+
+		if ((occupancy[opposite] & Board.masks[to]) != 0) {
+			return to;
+		}
+
+		if (Move.pieceType(move) == Commons.PieceType.PAWN
+				&& (Board.masks[to] & board[opposite][6]) != 0) {
+			return side == Commons.Color.BLACK ? to - 8 : to + 8;
+		}
+		return -1;
+	}
+
+}
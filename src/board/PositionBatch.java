@@ -0,0 +1,372 @@
+package board;
+
+import java.util.Arrays;
+
+import utils.Commons;
+
+/**
+ * Many positions stored as columns, one long[] for every entry of the usual
+ * long[2][7] board layout and one for the sides to move, so the same query
+ * can be run over all of them in one loop. Position i is made of
+ * columns[color][type][i].
+ *
+ * With the vector API, when the jdk.incubator.vector module is there (run
+ * with --add-modules jdk.incubator.vector), the queries work on whole
+ * bitmaps with shifts and masks only, no table lookups, on many positions
+ * at once, see VECTORS. Without it, or after
+ * setUseVectors(false), they loop over the positions one by one. The
+ * attacked squares and checks then come from MoveGenerator and Board,
+ * their table lookups are faster than sliding one position at a time.
+ */
+
+public class PositionBatch {
+
+	static final long NOT_FILE_A = ~Commons.Bitmaps.FILES[Commons.File.A];
+	static final long NOT_FILE_H = ~Commons.Bitmaps.FILES[Commons.File.H];
+	static final long NOT_FILE_AB = NOT_FILE_A
+			& ~Commons.Bitmaps.FILES[Commons.File.B];
+	static final long NOT_FILE_GH = NOT_FILE_H
+			& ~Commons.Bitmaps.FILES[Commons.File.G];
+
+	// The vector kernels, null without the module or when they were not built
+	private static final Kernels VECTORS = loadVectors();
+
+	// [color][type][position], type 6 is the state row
+	private final long[][][] columns;
+	private final long[] sides;
+	// Scratch space for the vector API
+	private final long[] empty;
+	private final long[][] enemy;
+	private final long[] attacked;
+	// Scratch space for the positions taken one by one
+	private final long[] occupied;
+	private final long[] board = new long[Board.FLAT_LENGTH];
+	private final int capacity;
+	private int size;
+	private boolean useVectors = VECTORS != null;
+
+	/**
+	 * The queries over many positions at a time, see PositionBatchVectors.
+	 * PositionBatch only knows them through this interface, so it builds
+	 * and runs without the vector module.
+	 */
+
+	interface Kernels {
+
+		void getOccupancy(long[][][] columns, int size, long[] out);
+
+		void getOccupancy(long[][] pieces, int size, long[] out);
+
+		void getKnightAttacks(long[] knights, int size, long[] out);
+
+		void getKingAttacks(long[] kings, int size, long[] out);
+
+		void getPawnAttacks(long[] pawns, int color, int size, long[] out);
+
+		/**
+		 * @return how many positions were done, the rest are left to the
+		 *         caller
+		 */
+
+		int getAttackedSquares(long[][][] columns, int color, int size,
+				long[] empty, long[] out);
+
+		/**
+		 * @return how many positions were done, the rest are left to the
+		 *         caller
+		 */
+
+		int isInCheck(long[][][] columns, long[] sides, int size,
+				long[] empty, long[][] enemy, long[] attacked, boolean[] out);
+	}
+
+	public PositionBatch(int capacity) {
+		this.capacity = capacity;
+		columns = new long[2][7][capacity];
+		sides = new long[capacity];
+		empty = new long[capacity];
+		enemy = new long[7][capacity];
+		attacked = new long[capacity];
+		occupied = new long[capacity];
+	}
+
+	/**
+	 * @return true if the vector API can be used
+	 */
+
+	public static boolean isVectorsPresent() {
+		return VECTORS != null;
+	}
+
+	private static Kernels loadVectors() {
+		if (!ModuleLayer.boot().findModule("jdk.incubator.vector")
+				.isPresent()) {
+			return null;
+		}
+		try {
+			return (Kernels) Class.forName("board.PositionBatchVectors")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// Built without -Dvectors=true
+			return null;
+		}
+	}
+
+	/**
+	 * Use the vector API or loop over the positions, to compare them. It is
+	 * only used when present.
+	 */
+
+	public void setUseVectors(boolean useVectors) {
+		this.useVectors = useVectors && VECTORS != null;
+	}
+
+	public boolean isUseVectors() {
+		return useVectors;
+	}
+
+	/**
+	 * Add a position at the end.
+	 *
+	 * @return the index of the position
+	 */
+
+	public int add(long[][] board, int side) {
+		if (size == capacity) {
+			throw new IllegalArgumentException("Batch is full: " + capacity);
+		}
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 7; type++) {
+				columns[color][type][size] = board[color][type];
+			}
+		}
+		sides[size] = side;
+		return size++;
+	}
+
+	/**
+	 * Copy a position out of the batch.
+	 *
+	 * @return the side to move
+	 */
+
+	public int get(int index, long[][] board) {
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 7; type++) {
+				board[color][type] = columns[color][type][index];
+			}
+		}
+		return (int) sides[index];
+	}
+
+	/**
+	 * Get a column to read or change directly.
+	 *
+	 * @return the bitmaps of a piece type of a color for all positions
+	 */
+
+	public long[] getColumn(int color, int type) {
+		return columns[color][type];
+	}
+
+	public long[] getSides() {
+		return sides;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Find the occupied squares of every position.
+	 *
+	 * @param out
+	 *            where to put them, at least size() long
+	 */
+
+	public void getOccupancy(long[] out) {
+		if (useVectors) {
+			VECTORS.getOccupancy(columns, size, out);
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			out[i] = getOccupancy(columns, Commons.Color.BLACK, i)
+					| getOccupancy(columns, Commons.Color.WHITE, i);
+		}
+	}
+
+	/**
+	 * Find the squares occupied by a color in every position.
+	 */
+
+	public void getOccupancy(int color, long[] out) {
+		if (useVectors) {
+			VECTORS.getOccupancy(columns[color], size, out);
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			out[i] = getOccupancy(columns, color, i);
+		}
+	}
+
+	/**
+	 * Find the squares attacked by the knights of a color in every position.
+	 */
+
+	public void getKnightAttacks(int color, long[] out) {
+		long[] knights = columns[color][Commons.PieceType.KNIGHT];
+		if (useVectors) {
+			VECTORS.getKnightAttacks(knights, size, out);
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			out[i] = getKnightAttacks(knights[i]);
+		}
+	}
+
+	/**
+	 * Find the squares attacked by the king of a color in every position.
+	 */
+
+	public void getKingAttacks(int color, long[] out) {
+		long[] kings = columns[color][Commons.PieceType.KING];
+		if (useVectors) {
+			VECTORS.getKingAttacks(kings, size, out);
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			out[i] = getKingAttacks(kings[i]);
+		}
+	}
+
+	/**
+	 * Find the squares attacked by the pawns of a color in every position.
+	 */
+
+	public void getPawnAttacks(int color, long[] out) {
+		long[] pawns = columns[color][Commons.PieceType.PAWN];
+		if (useVectors) {
+			VECTORS.getPawnAttacks(pawns, color, size, out);
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			out[i] = getPawnAttacks(pawns[i], color);
+		}
+	}
+
+	/**
+	 * Find all squares attacked by a color in every position, the same as
+	 * MoveGenerator.getAttackedSquares.
+	 */
+
+	public void getAttackedSquares(int color, long[] out) {
+		int i = 0;
+		if (useVectors) {
+			i = VECTORS.getAttackedSquares(columns, color, size,
+					empty, out);
+		}
+		getOccupied(i);
+		int offset = Board.getFlatIndex(color, 0);
+		for (; i < size; i++) {
+			load(color, i);
+			out[i] = MoveGenerator.getAttackedSquares(color, board, offset,
+					occupied[i]);
+		}
+	}
+
+	/**
+	 * Find if the side to move is in check in every position.
+	 */
+
+	public void isInCheck(boolean[] out) {
+		int i = 0;
+		if (useVectors) {
+			i = VECTORS.isInCheck(columns, sides, size, empty,
+					enemy, attacked, out);
+		}
+		getOccupied(i);
+		for (; i < size; i++) {
+			int side = (int) sides[i];
+			int king = Long.numberOfTrailingZeros(
+					columns[side][Commons.PieceType.KING][i]);
+			load(Board.oppositeSide(side), i);
+			out[i] = Board.isAttacked(king, side, board, occupied[i]);
+		}
+	}
+
+	/**
+	 * Find the occupied squares of the positions from start on, a column at
+	 * a time.
+	 */
+
+	private void getOccupied(int start) {
+		Arrays.fill(occupied, start, size, 0);
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 6; type++) {
+				long[] pieces = columns[color][type];
+				for (int i = start; i < size; i++) {
+					occupied[i] |= pieces[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy the pieces of a color in a position to the flat board.
+	 */
+
+	private void load(int color, int i) {
+		long[][] pieces = columns[color];
+		int offset = Board.getFlatIndex(color, 0);
+		for (int type = 0; type < 6; type++) {
+			board[offset + type] = pieces[type][i];
+		}
+	}
+
+	static long getOccupancy(long[][][] columns, int color, int i) {
+		long[][] pieces = columns[color];
+		return pieces[0][i] | pieces[1][i] | pieces[2][i] | pieces[3][i]
+				| pieces[4][i] | pieces[5][i];
+	}
+
+	/**
+	 * @return the squares attacked by all knights of a bitmap
+	 */
+
+	public static long getKnightAttacks(long knights) {
+		long one = ((knights >>> 1) & NOT_FILE_H) | ((knights << 1) & NOT_FILE_A);
+		long two = ((knights >>> 2) & NOT_FILE_GH)
+				| ((knights << 2) & NOT_FILE_AB);
+		return (one << 16) | (one >>> 16) | (two << 8) | (two >>> 8);
+	}
+
+	/**
+	 * @return the squares around a king, the bitmap can only have one
+	 */
+
+	public static long getKingAttacks(long king) {
+		long row = king | ((king >>> 1) & NOT_FILE_H)
+				| ((king << 1) & NOT_FILE_A);
+		return (row | (row << 8) | (row >>> 8)) & ~king;
+	}
+
+	/**
+	 * @return the squares attacked by all pawns of a bitmap
+	 */
+
+	public static long getPawnAttacks(long pawns, int color) {
+		if (color == Commons.Color.WHITE) {
+			return ((pawns & NOT_FILE_A) >>> 9) | ((pawns & NOT_FILE_H) >>> 7);
+		}
+		return ((pawns & NOT_FILE_A) << 7) | ((pawns & NOT_FILE_H) << 9);
+	}
+
+}
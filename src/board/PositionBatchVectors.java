@@ -0,0 +1,343 @@
+package board;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import utils.Commons;
+
+/**
+ * The queries of PositionBatch with the vector API, as many positions at a
+ * time as there are longs in a vector. The positions left over at the end
+ * go through the scalar code, getAttackedSquares and isInCheck leave them
+ * to PositionBatch. It is only built with "ant -Dvectors=true", and
+ * PositionBatch only loads it by name when the jdk.incubator.vector module
+ * is there.
+ */
+
+final class PositionBatchVectors implements PositionBatch.Kernels {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	PositionBatchVectors() {
+	}
+
+	@Override
+	public void getOccupancy(long[][][] columns, int size, long[] out) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(size); i < end; i += SPECIES.length()) {
+			getOccupancy(columns[Commons.Color.BLACK], i)
+					.or(getOccupancy(columns[Commons.Color.WHITE], i))
+					.intoArray(out, i);
+		}
+		for (; i < size; i++) {
+			out[i] = PositionBatch.getOccupancy(columns, Commons.Color.BLACK, i)
+					| PositionBatch.getOccupancy(columns, Commons.Color.WHITE, i);
+		}
+	}
+
+	@Override
+	public void getOccupancy(long[][] pieces, int size, long[] out) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(size); i < end; i += SPECIES.length()) {
+			getOccupancy(pieces, i).intoArray(out, i);
+		}
+		for (; i < size; i++) {
+			out[i] = pieces[0][i] | pieces[1][i] | pieces[2][i] | pieces[3][i]
+					| pieces[4][i] | pieces[5][i];
+		}
+	}
+
+	@Override
+	public void getKnightAttacks(long[] knights, int size, long[] out) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(size); i < end; i += SPECIES.length()) {
+			getKnightAttacks(LongVector.fromArray(SPECIES, knights, i))
+					.intoArray(out, i);
+		}
+		for (; i < size; i++) {
+			out[i] = PositionBatch.getKnightAttacks(knights[i]);
+		}
+	}
+
+	@Override
+	public void getKingAttacks(long[] kings, int size, long[] out) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(size); i < end; i += SPECIES.length()) {
+			getKingAttacks(LongVector.fromArray(SPECIES, kings, i)).intoArray(
+					out, i);
+		}
+		for (; i < size; i++) {
+			out[i] = PositionBatch.getKingAttacks(kings[i]);
+		}
+	}
+
+	@Override
+	public void getPawnAttacks(long[] pawns, int color, int size, long[] out) {
+		int i = 0;
+		for (int end = SPECIES.loopBound(size); i < end; i += SPECIES.length()) {
+			getPawnAttacks(LongVector.fromArray(SPECIES, pawns, i), color)
+					.intoArray(out, i);
+		}
+		for (; i < size; i++) {
+			out[i] = PositionBatch.getPawnAttacks(pawns[i], color);
+		}
+	}
+
+	/**
+	 * Done in passes over the positions, one for the empty squares, one for
+	 * the pawns, knights and king and one for every direction the sliders
+	 * move in. A whole query in one loop is too large for the compiler to
+	 * inline, and then every vector in it is allocated on the heap.
+	 *
+	 * @param empty
+	 *            scratch space, at least size long
+	 * @return how many positions were done, the rest are left to the caller
+	 */
+
+	@Override
+	public int getAttackedSquares(long[][][] columns, int color, int size,
+			long[] empty, long[] out) {
+		int end = SPECIES.loopBound(size);
+		long[][] pieces = columns[color];
+		long[] queens = pieces[Commons.PieceType.QUEEN];
+		long[] rooks = pieces[Commons.PieceType.ROOK];
+		long[] bishops = pieces[Commons.PieceType.BISHOP];
+
+		getEmpty(columns, end, empty);
+		getLeaperAttacks(pieces, color, end, out);
+		slideUp(rooks, queens, empty, 1, PositionBatch.NOT_FILE_A, end, out);
+		slideDown(rooks, queens, empty, 1, PositionBatch.NOT_FILE_H, end, out);
+		slideUp(rooks, queens, empty, 8, -1L, end, out);
+		slideDown(rooks, queens, empty, 8, -1L, end, out);
+		slideUp(bishops, queens, empty, 9, PositionBatch.NOT_FILE_A, end, out);
+		slideUp(bishops, queens, empty, 7, PositionBatch.NOT_FILE_H, end, out);
+		slideDown(bishops, queens, empty, 7, PositionBatch.NOT_FILE_A, end,
+				out);
+		slideDown(bishops, queens, empty, 9, PositionBatch.NOT_FILE_H, end,
+				out);
+		return end;
+	}
+
+	/**
+	 * The pieces of the side not to move are gathered first, so the attacked
+	 * squares are found only once.
+	 *
+	 * @param empty
+	 *            scratch space, at least size long
+	 * @param enemy
+	 *            scratch space, seven arrays of at least size long, the pieces
+	 *            of the side not to move and the king of the side to move
+	 * @param attacked
+	 *            scratch space, at least size long
+	 * @return how many positions were done, the rest are left to the caller
+	 */
+
+	@Override
+	public int isInCheck(long[][][] columns, long[] sides, int size,
+			long[] empty, long[][] enemy, long[] attacked, boolean[] out) {
+		int end = SPECIES.loopBound(size);
+		long[] kings = enemy[6];
+		long[] queens = enemy[Commons.PieceType.QUEEN];
+		long[] rooks = enemy[Commons.PieceType.ROOK];
+		long[] bishops = enemy[Commons.PieceType.BISHOP];
+
+		getEnemy(columns, sides, end, enemy);
+		getEmpty(columns, end, empty);
+		getLeaperAttacks(enemy, sides, end, attacked);
+		slideUp(rooks, queens, empty, 1, PositionBatch.NOT_FILE_A, end,
+				attacked);
+		slideDown(rooks, queens, empty, 1, PositionBatch.NOT_FILE_H, end,
+				attacked);
+		slideUp(rooks, queens, empty, 8, -1L, end, attacked);
+		slideDown(rooks, queens, empty, 8, -1L, end, attacked);
+		slideUp(bishops, queens, empty, 9, PositionBatch.NOT_FILE_A, end,
+				attacked);
+		slideUp(bishops, queens, empty, 7, PositionBatch.NOT_FILE_H, end,
+				attacked);
+		slideDown(bishops, queens, empty, 7, PositionBatch.NOT_FILE_A, end,
+				attacked);
+		slideDown(bishops, queens, empty, 9, PositionBatch.NOT_FILE_H, end,
+				attacked);
+
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			LongVector.fromArray(SPECIES, attacked, i)
+					.and(LongVector.fromArray(SPECIES, kings, i))
+					.compare(VectorOperators.NE, 0).intoArray(out, i);
+		}
+		return end;
+	}
+
+	private static void getEnemy(long[][][] columns, long[] sides, int end,
+			long[][] enemy) {
+		long[][] black = columns[Commons.Color.BLACK];
+		long[][] white = columns[Commons.Color.WHITE];
+		for (int type = 0; type < 6; type++) {
+			blend(white[type], black[type], sides, end, enemy[type]);
+		}
+		blend(black[Commons.PieceType.KING], white[Commons.PieceType.KING],
+				sides, end, enemy[6]);
+	}
+
+	/**
+	 * Take from the first array where black is to move and from the second
+	 * where white is.
+	 */
+
+	private static void blend(long[] black, long[] white, long[] sides,
+			int end, long[] out) {
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			VectorMask<Long> whiteToMove = LongVector.fromArray(SPECIES, sides,
+					i).compare(VectorOperators.EQ, Commons.Color.WHITE);
+			LongVector.fromArray(SPECIES, black, i)
+					.blend(LongVector.fromArray(SPECIES, white, i), whiteToMove)
+					.intoArray(out, i);
+		}
+	}
+
+	private static void getEmpty(long[][][] columns, int end, long[] empty) {
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			getOccupancy(columns[Commons.Color.BLACK], i)
+					.or(getOccupancy(columns[Commons.Color.WHITE], i)).not()
+					.intoArray(empty, i);
+		}
+	}
+
+	private static void getLeaperAttacks(long[][] pieces, int color, int end,
+			long[] out) {
+		long[] pawns = pieces[Commons.PieceType.PAWN];
+		long[] knights = pieces[Commons.PieceType.KNIGHT];
+		long[] kings = pieces[Commons.PieceType.KING];
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			getPawnAttacks(LongVector.fromArray(SPECIES, pawns, i), color)
+					.or(getKnightAttacks(LongVector.fromArray(SPECIES,
+							knights, i)))
+					.or(getKingAttacks(LongVector.fromArray(SPECIES, kings, i)))
+					.intoArray(out, i);
+		}
+	}
+
+	/**
+	 * The same for the pieces of the side not to move, their pawns take
+	 * towards the side to move.
+	 */
+
+	private static void getLeaperAttacks(long[][] pieces, long[] sides,
+			int end, long[] out) {
+		long[] pawns = pieces[Commons.PieceType.PAWN];
+		long[] knights = pieces[Commons.PieceType.KNIGHT];
+		long[] kings = pieces[Commons.PieceType.KING];
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			VectorMask<Long> whiteToMove = LongVector.fromArray(SPECIES, sides,
+					i).compare(VectorOperators.EQ, Commons.Color.WHITE);
+			LongVector pawn = LongVector.fromArray(SPECIES, pawns, i);
+			getPawnAttacks(pawn, Commons.Color.WHITE)
+					.blend(getPawnAttacks(pawn, Commons.Color.BLACK),
+							whiteToMove)
+					.or(getKnightAttacks(LongVector.fromArray(SPECIES,
+							knights, i)))
+					.or(getKingAttacks(LongVector.fromArray(SPECIES, kings, i)))
+					.intoArray(out, i);
+		}
+	}
+
+	/**
+	 * Slide the sliders and queens towards higher squares until they hit
+	 * something, by doubling the distance every step (a Kogge-Stone fill).
+	 * The squares attacked, the first piece hit included, are added to out.
+	 *
+	 * @param shift
+	 *            how far one step is
+	 * @param mask
+	 *            the squares a step can end on without wrapping around the
+	 *            board
+	 */
+
+	private static void slideUp(long[] sliders, long[] queens, long[] empty,
+			int shift, long mask, int end, long[] out) {
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			LongVector pieces = LongVector.fromArray(SPECIES, sliders, i).or(
+					LongVector.fromArray(SPECIES, queens, i));
+			LongVector free = LongVector.fromArray(SPECIES, empty, i).and(mask);
+			pieces = pieces.or(free.and(pieces.lanewise(VectorOperators.LSHL,
+					shift)));
+			free = free.and(free.lanewise(VectorOperators.LSHL, shift));
+			pieces = pieces.or(free.and(pieces.lanewise(VectorOperators.LSHL,
+					2 * shift)));
+			free = free.and(free.lanewise(VectorOperators.LSHL, 2 * shift));
+			pieces = pieces.or(free.and(pieces.lanewise(VectorOperators.LSHL,
+					4 * shift)));
+			pieces.lanewise(VectorOperators.LSHL, shift).and(mask)
+					.or(LongVector.fromArray(SPECIES, out, i)).intoArray(out, i);
+		}
+	}
+
+	/**
+	 * The same as slideUp towards lower squares.
+	 */
+
+	private static void slideDown(long[] sliders, long[] queens, long[] empty,
+			int shift, long mask, int end, long[] out) {
+		for (int i = 0; i < end; i += SPECIES.length()) {
+			LongVector pieces = LongVector.fromArray(SPECIES, sliders, i).or(
+					LongVector.fromArray(SPECIES, queens, i));
+			LongVector free = LongVector.fromArray(SPECIES, empty, i).and(mask);
+			pieces = pieces.or(free.and(pieces.lanewise(VectorOperators.LSHR,
+					shift)));
+			free = free.and(free.lanewise(VectorOperators.LSHR, shift));
+			pieces = pieces.or(free.and(pieces.lanewise(VectorOperators.LSHR,
+					2 * shift)));
+			free = free.and(free.lanewise(VectorOperators.LSHR, 2 * shift));
+			pieces = pieces.or(free.and(pieces.lanewise(VectorOperators.LSHR,
+					4 * shift)));
+			pieces.lanewise(VectorOperators.LSHR, shift).and(mask)
+					.or(LongVector.fromArray(SPECIES, out, i)).intoArray(out, i);
+		}
+	}
+
+	private static LongVector getOccupancy(long[][] pieces, int i) {
+		return LongVector.fromArray(SPECIES, pieces[0], i)
+				.or(LongVector.fromArray(SPECIES, pieces[1], i))
+				.or(LongVector.fromArray(SPECIES, pieces[2], i))
+				.or(LongVector.fromArray(SPECIES, pieces[3], i))
+				.or(LongVector.fromArray(SPECIES, pieces[4], i))
+				.or(LongVector.fromArray(SPECIES, pieces[5], i));
+	}
+
+	private static LongVector getKnightAttacks(LongVector knights) {
+		LongVector one = knights.lanewise(VectorOperators.LSHR, 1)
+				.and(PositionBatch.NOT_FILE_H)
+				.or(knights.lanewise(VectorOperators.LSHL, 1).and(
+						PositionBatch.NOT_FILE_A));
+		LongVector two = knights.lanewise(VectorOperators.LSHR, 2)
+				.and(PositionBatch.NOT_FILE_GH)
+				.or(knights.lanewise(VectorOperators.LSHL, 2).and(
+						PositionBatch.NOT_FILE_AB));
+		return one.lanewise(VectorOperators.LSHL, 16)
+				.or(one.lanewise(VectorOperators.LSHR, 16))
+				.or(two.lanewise(VectorOperators.LSHL, 8))
+				.or(two.lanewise(VectorOperators.LSHR, 8));
+	}
+
+	private static LongVector getKingAttacks(LongVector king) {
+		LongVector row = king
+				.or(king.lanewise(VectorOperators.LSHR, 1).and(
+						PositionBatch.NOT_FILE_H))
+				.or(king.lanewise(VectorOperators.LSHL, 1).and(
+						PositionBatch.NOT_FILE_A));
+		return row.or(row.lanewise(VectorOperators.LSHL, 8))
+				.or(row.lanewise(VectorOperators.LSHR, 8)).and(king.not());
+	}
+
+	private static LongVector getPawnAttacks(LongVector pawns, int color) {
+		LongVector left = pawns.and(PositionBatch.NOT_FILE_A);
+		LongVector right = pawns.and(PositionBatch.NOT_FILE_H);
+		if (color == Commons.Color.WHITE) {
+			return left.lanewise(VectorOperators.LSHR, 9).or(
+					right.lanewise(VectorOperators.LSHR, 7));
+		}
+		return left.lanewise(VectorOperators.LSHL, 7).or(
+				right.lanewise(VectorOperators.LSHL, 9));
+	}
+
+}
@@ -0,0 +1,198 @@
+package board;
+
+import java.nio.ByteBuffer;
+
+import utils.Commons;
+
+/**
+ * Writes positions in a fixed width binary form of SIZE bytes, for storing
+ * and streaming many of them. A position is written as
+ *
+ * <pre>
+ * long  the occupied squares
+ * long  a nibble for each of the first 16 pieces, the first one lowest
+ * long  a nibble for each of the next 16 pieces
+ * byte  castling KQkq in bits 0 to 3, bit 4 set when black is to move
+ * </pre>
+ *
+ * where the pieces are in the order of the squares in the occupied bitmap.
+ * A nibble is type | color << 3, or EN_PASSANT | color << 3 for a pawn that
+ * just made a double push and can be taken en passant. The longs are in the
+ * byte order of the buffer, so read with the same order as written.
+ *
+ * Only castling rights for both the king and the rook flag are kept, a
+ * king flag left alone after both rooks moved is dropped.
+ */
+
+public class PositionCodec {
+
+	public static final int SIZE = 25;
+
+	// The nibble for a pawn that can be taken en passant
+	private static final int EN_PASSANT = 6;
+
+	private static final int BLACK_TO_MOVE = 1 << 4;
+
+	private static final long EN_PASSANT_SQUARES = Commons.Bitmaps.RANKS[2]
+			| Commons.Bitmaps.RANKS[5];
+
+	// King and rook squares of the castling rights in the order KQkq
+	private static final int[] CASTLING_KING = { 60, 60, 4, 4 };
+	private static final int[] CASTLING_ROOK = { 63, 56, 7, 0 };
+	private static final int[] CASTLING_COLOR = { Commons.Color.WHITE,
+			Commons.Color.WHITE, Commons.Color.BLACK, Commons.Color.BLACK };
+
+	/**
+	 * Write a position at the position of a buffer and move past it.
+	 *
+	 * @param board
+	 *            the board, it can not have more than 32 pieces
+	 * @param side
+	 *            the side to move
+	 * @param out
+	 *            the buffer to write to
+	 */
+
+	public static void encode(long[][] board, int side, ByteBuffer out) {
+		long occupied = Board.getBitMap(board);
+		if (Long.bitCount(occupied) > 32) {
+			throw new IllegalArgumentException("More than 32 pieces");
+		}
+
+		// The pawn that made a double push is one square past the flag
+		long ep = board[Board.oppositeSide(side)][6] & EN_PASSANT_SQUARES;
+		long epPawn = side == Commons.Color.WHITE ? ep << 8 : ep >>> 8;
+
+		long white = Board.getBitMapForColor(board, Commons.Color.WHITE);
+		long low = 0;
+		long high = 0;
+		int i = 0;
+		for (long b = occupied; b != 0; b &= (b - 1), i++) {
+			int square = Long.numberOfTrailingZeros(b);
+			int color = (white & Board.masks[square]) != 0 ? Commons.Color.WHITE
+					: Commons.Color.BLACK;
+			int type = (epPawn & Board.masks[square]) != 0 ? EN_PASSANT
+					: Board.getPieceAtSquare(board, square, color);
+
+			long nibble = (long) (type | color << 3) << ((i & 15) * 4);
+			if (i < 16) {
+				low |= nibble;
+			} else {
+				high |= nibble;
+			}
+		}
+
+		int state = side == Commons.Color.BLACK ? BLACK_TO_MOVE : 0;
+		for (int right = 0; right < 4; right++) {
+			long flags = Board.masks[CASTLING_KING[right]]
+					| Board.masks[CASTLING_ROOK[right]];
+			if ((board[CASTLING_COLOR[right]][6] & flags) == flags) {
+				state |= 1 << right;
+			}
+		}
+
+		out.putLong(occupied).putLong(low).putLong(high).put((byte) state);
+	}
+
+	public static void encode(Position position, ByteBuffer out) {
+		encode(position.getBoard(), position.getSide(), out);
+	}
+
+	/**
+	 * Read a position at the position of a buffer and move past it.
+	 *
+	 * @param in
+	 *            the buffer to read from
+	 * @param board
+	 *            the board to put the position in, everything on it is
+	 *            cleared first
+	 * @return the side to move
+	 */
+
+	public static int decode(ByteBuffer in, long[][] board) {
+		long occupied = in.getLong();
+		long low = in.getLong();
+		long high = in.getLong();
+		int state = in.get();
+
+		for (int i = 0; i < 7; i++) {
+			board[Commons.Color.BLACK][i] = 0;
+			board[Commons.Color.WHITE][i] = 0;
+		}
+
+		int i = 0;
+		for (long b = occupied; b != 0; b &= (b - 1), i++) {
+			int square = Long.numberOfTrailingZeros(b);
+			long nibbles = i < 16 ? low : high;
+			int nibble = (int) (nibbles >>> ((i & 15) * 4)) & 0xF;
+			int color = nibble >>> 3;
+			int type = nibble & 0x7;
+
+			if (type == EN_PASSANT) {
+				type = Commons.PieceType.PAWN;
+				int ep = color == Commons.Color.WHITE ? square + 8 : square - 8;
+				board[color][6] |= Board.masks[ep];
+			}
+			board[color][type] |= Board.masks[square];
+		}
+
+		for (int right = 0; right < 4; right++) {
+			if ((state & 1 << right) != 0) {
+				long[] pieces = board[CASTLING_COLOR[right]];
+				pieces[6] |= Board.masks[CASTLING_KING[right]]
+						| Board.masks[CASTLING_ROOK[right]];
+			}
+		}
+
+		return (state & BLACK_TO_MOVE) != 0 ? Commons.Color.BLACK
+				: Commons.Color.WHITE;
+	}
+
+	/**
+	 * Read a position into the board of a position and find its occupied
+	 * squares and key again.
+	 *
+	 * @return the side to move
+	 */
+
+	public static int decode(ByteBuffer in, Position position) {
+		int side = decode(in, position.getBoard());
+		position.refresh(side);
+		return side;
+	}
+
+	/**
+	 * Write many positions after each other.
+	 *
+	 * @param count
+	 *            how many of the boards to write
+	 * @return the number of bytes written
+	 */
+
+	public static int encode(long[][][] boards, int[] sides, int count,
+			ByteBuffer out) {
+		for (int i = 0; i < count; i++) {
+			encode(boards[i], sides[i], out);
+		}
+		return count * SIZE;
+	}
+
+	/**
+	 * Read positions until the buffer or the boards run out.
+	 *
+	 * @param boards
+	 *            the boards to read into
+	 * @param sides
+	 *            the side to move of each board is put here
+	 * @return the number of positions read
+	 */
+
+	public static int decode(ByteBuffer in, long[][][] boards, int[] sides) {
+		int count = Math.min(in.remaining() / SIZE, boards.length);
+		for (int i = 0; i < count; i++) {
+			sides[i] = decode(in, boards[i]);
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,146 @@
+package board;
+
+import utils.Commons;
+
+/**
+ * Reads moves in Standard Algebraic Notation, like "Nbd7", "exd6", "e8=Q+"
+ * or "O-O". A move is found by matching the SAN against the valid moves of
+ * the position, so only legal moves are ever returned.
+ */
+
+public class San {
+
+	private static final String PIECES = "KQRBN";
+
+	/**
+	 * Find the move a SAN stands for.
+	 *
+	 * @param san
+	 *            the move
+	 * @param side
+	 *            the side to move
+	 * @param board
+	 *            the board
+	 * @return the move, see Move.encode
+	 */
+
+	public static int parse(CharSequence san, int side, long[][] board) {
+		return parse(san, 0, san.length(), side, board, new MoveList());
+	}
+
+	/**
+	 * Find the move the SAN between start and end of a text stands for.
+	 *
+	 * @param moves
+	 *            a list to put the valid moves in, it is cleared first
+	 * @return the move, see Move.encode
+	 * @throws IllegalArgumentException
+	 *             if the SAN is not a legal move or could be more than one
+	 */
+
+	public static int parse(CharSequence text, int start, int end, int side,
+			long[][] board, MoveList moves) {
+		// Check and annotation marks are not needed to find the move
+		while (end > start && "+#!?".indexOf(text.charAt(end - 1)) != -1) {
+			end--;
+		}
+
+		moves.clear();
+		Board.getValidMovesForColor(side, board, moves);
+
+		if (end - start >= 3 && isCastle(text.charAt(start))) {
+			boolean queenside = end - start >= 5;
+			int to = side == Commons.Color.WHITE ? (queenside ? 58 : 62)
+					: (queenside ? 2 : 6);
+			for (int i = 0; i < moves.size(); i++) {
+				int move = moves.get(i);
+				if (Move.isCastle(move) && Move.toSquare(move) == to) {
+					return move;
+				}
+			}
+			throw notLegal(text, start, end);
+		}
+
+		// A promotion is written as e8=Q or e8Q
+		int promotion = -1;
+		if (end - start >= 3 && PIECES.indexOf(text.charAt(end - 1)) > 0) {
+			promotion = PIECES.indexOf(text.charAt(end - 1));
+			end -= text.charAt(end - 2) == '=' ? 2 : 1;
+		}
+
+		if (end - start < 2) {
+			throw notLegal(text, start, end);
+		}
+		int file = text.charAt(end - 2) - 'a';
+		int rank = text.charAt(end - 1) - '1';
+		if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+			throw notLegal(text, start, end);
+		}
+		int to = (7 - rank) * 8 + file;
+
+		int type = PIECES.indexOf(text.charAt(start));
+		int i = start;
+		if (type == -1) {
+			type = Commons.PieceType.PAWN;
+		} else {
+			i++;
+		}
+
+		// What is left between the piece and the square tells them apart
+		int fromFile = -1;
+		int fromRank = -1;
+		for (; i < end - 2; i++) {
+			char c = text.charAt(i);
+			if (c >= 'a' && c <= 'h') {
+				fromFile = c - 'a';
+			} else if (c >= '1' && c <= '8') {
+				fromRank = 7 - (c - '1');
+			} else if (c != 'x' && c != '-' && c != ':') {
+				throw notLegal(text, start, end);
+			}
+		}
+
+		int found = -1;
+		for (int m = 0; m < moves.size(); m++) {
+			int move = moves.get(m);
+			int from = Move.fromSquare(move);
+			int moved = Move.isPromotion(move) ? Commons.PieceType.PAWN : Move
+					.pieceType(move);
+
+			if (Move.toSquare(move) != to || moved != type
+					|| Move.isCastle(move)) {
+				continue;
+			}
+			if ((fromFile != -1 && from % 8 != fromFile)
+					|| (fromRank != -1 && from / 8 != fromRank)) {
+				continue;
+			}
+			if (Move.isPromotion(move) ? Move.pieceType(move) != promotion
+					: promotion != -1) {
+				continue;
+			}
+
+			if (found != -1) {
+				throw new IllegalArgumentException("Ambiguous move: "
+						+ text.subSequence(start, end));
+			}
+			found = move;
+		}
+
+		if (found == -1) {
+			throw notLegal(text, start, end);
+		}
+		return found;
+	}
+
+	private static boolean isCastle(char c) {
+		return c == 'O' || c == '0';
+	}
+
+	private static IllegalArgumentException notLegal(CharSequence text,
+			int start, int end) {
+		return new IllegalArgumentException("Not a legal move: "
+				+ text.subSequence(start, end));
+	}
+
+}
@@ -0,0 +1,339 @@
+package board;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Random;
+
+import utils.Commons;
+
+/**
+ * Constant time attacks for rooks, bishops and queens. The attacks for every
+ * possible set of blockers are precomputed into tables, and the blockers on
+ * the board are turned into a table index, either by multiplying with a
+ * magic number or by compressing the blocker bits (with Long.compress / the
+ * PEXT instruction where the JDK has it, else with a loop).
+ */
+
+public class SlidingAttacks {
+
+	// This is generated stuff, see findMagic
+
+	private static final long[] ROOK_MAGICS = {
+		0x1200108041002200L, 0x6080102000804008L,
+		0x0100110040082003L, 0x1080100080040800L,
+		0x0100041003000800L, 0x4300080604000D00L,
+		0x2400011004024088L, 0x0600010400803042L,
+		0x0045002441008000L, 0x8002004100208208L,
+		0x0241808010002000L, 0x0000800800801000L,
+		0x0100800400080080L, 0x00A6808004000200L,
+		0x0002000802000401L, 0x0045000200408100L,
+		0x0400808000400024L, 0x2010034000422000L,
+		0x0002020020104680L, 0x8080808010000804L,
+		0x1400818028008400L, 0x0101808004010200L,
+		0x0808040010010288L, 0x0000020000412084L,
+		0x400A800080264001L, 0x0040400080802000L,
+		0x0014200080100480L, 0x005201C200089020L,
+		0x1405001100040801L, 0x0A0A000280240080L,
+		0x0004010400880210L, 0x049006A2001400C1L,
+		0x1110400890800221L, 0x0010014004C02000L,
+		0x0800200080801000L, 0x0800080080801000L,
+		0x0800080080800400L, 0x0802000902000410L,
+		0x0000483004000221L, 0x0080408052000401L,
+		0x000081C000228001L, 0xA000200050084000L,
+		0x0302081040820020L, 0x008100201001000CL,
+		0x8100100801010004L, 0x1802000408020010L,
+		0x0102000100404080L, 0x0681485089220004L,
+		0x0080008040002080L, 0x0038400084200080L,
+		0x01B8200480100480L, 0x0000801000080080L,
+		0x8006080004008080L, 0x101A800200040080L,
+		0x0005000200440D00L, 0x4020008841240200L,
+		0x2801004080002011L, 0x1400208040010011L,
+		0x0010930020014089L, 0x4296180501300061L,
+		0x0812003430082006L, 0x1001000400080201L,
+		0x8000A2051000881CL, 0x0122910244008822L
+	};
+
+	private static final long[] BISHOP_MAGICS = {
+		0x0098012802015203L, 0x210268120C104008L,
+		0x00100404404C0802L, 0x0104404080816140L,
+		0x0414504009048210L, 0x00862820080B2040L,
+		0x04242A022260000DL, 0x9010444208014000L,
+		0x1080080808085040L, 0x00050208A8048188L,
+		0x0380092602020000L, 0x0000482040400000L,
+		0x1000020210100004L, 0xD2B0210402408000L,
+		0x20000A4508184200L, 0x1868008048181C80L,
+		0x004800A008102884L, 0x0004000208280100L,
+		0x2010200800851010L, 0x200C038809206028L,
+		0x010C004080A04007L, 0x0000800410008863L,
+		0xAC01080898011004L, 0xA011200045082830L,
+		0x0004102020029022L, 0x0031202298088103L,
+		0x2002900108044112L, 0x1821040008020820L,
+		0x0201010008104000L, 0x04108200010100A9L,
+		0x0C00808A01080800L, 0x0080450002840121L,
+		0x10180804000A2041L, 0x1001B00CE1280808L,
+		0x0140108202900410L, 0x8608020080280080L,
+		0x4040102020C20080L, 0x8090100040088064L,
+		0x0008010460040600L, 0x0010812104804400L,
+		0x40840948C0004800L, 0x00040098044A9848L,
+		0x0000402C01001000L, 0x9000404010400A00L,
+		0x000002020C000200L, 0x0010101019408020L,
+		0x8002049800800200L, 0x0814008A004C0208L,
+		0x4402288220100004L, 0x00020A0104020982L,
+		0x40800021084802E0L, 0x0288000242021000L,
+		0x18448110C2021024L, 0x0200403004013006L,
+		0x1020021022008000L, 0x3008304400802002L,
+		0x1042084044102800L, 0x0001020042023044L,
+		0x1008001100809001L, 0x0000192003048800L,
+		0x0400208011020200L, 0x4608082020820081L,
+		0x408804C918010C00L, 0x1008100080810204L
+	};
+
+	private static final long[][] MASKS = new long[2][64];
+	private static final long[][] MAGICS = { ROOK_MAGICS, BISHOP_MAGICS };
+	private static final int[][] SHIFTS = new int[2][64];
+	private static final int[][] OFFSETS = new int[2][64];
+	private static final long[][] MAGIC_ATTACKS = new long[2][];
+	private static final long[][] COMPRESS_ATTACKS = new long[2][];
+
+	private static final int ROOK = 0;
+	private static final int BISHOP = 1;
+
+	// Long.compress if this JDK has it (19 and later), else null
+	private static final MethodHandle LONG_COMPRESS = findLongCompress();
+
+	static {
+		initTables(ROOK, Commons.PieceType.ROOK);
+		initTables(BISHOP, Commons.PieceType.BISHOP);
+	}
+
+	private static void initTables(int slider, int pieceType) {
+		int size = 0;
+		for (int square = 0; square < 64; square++) {
+			long mask = Commons.Bitmaps.BLOCKERMAP[pieceType][square];
+			MASKS[slider][square] = mask;
+			SHIFTS[slider][square] = 64 - Long.bitCount(mask);
+			OFFSETS[slider][square] = size;
+			size += 1 << Long.bitCount(mask);
+		}
+
+		MAGIC_ATTACKS[slider] = new long[size];
+		COMPRESS_ATTACKS[slider] = new long[size];
+
+		for (int square = 0; square < 64; square++) {
+			long mask = MASKS[slider][square];
+			long magic = MAGICS[slider][square];
+			int shift = SHIFTS[slider][square];
+			int offset = OFFSETS[slider][square];
+
+			// Walk through every subset of the mask
+			long blockers = 0;
+			do {
+				long attacks = getLoopAttacks(pieceType, square, blockers);
+				MAGIC_ATTACKS[slider][offset + (int) ((blockers * magic) >>> shift)] = attacks;
+				COMPRESS_ATTACKS[slider][offset + (int) compress(blockers, mask)] = attacks;
+				blockers = (blockers - mask) & mask;
+			} while (blockers != 0);
+		}
+	}
+
+	/**
+	 * Get the attacks of a rook
+	 *
+	 * @param square
+	 *            the square the rook is on
+	 * @param occupied
+	 *            bitmap of all occupied squares
+	 * @return bitmap of the attacks, including attacks on own pieces.
+	 */
+
+	public static long getRookAttacks(int square, long occupied) {
+		return MAGIC_ATTACKS[ROOK][OFFSETS[ROOK][square]
+				+ (int) (((occupied & MASKS[ROOK][square]) * ROOK_MAGICS[square]) >>> SHIFTS[ROOK][square])];
+	}
+
+	/**
+	 * Get the attacks of a bishop
+	 *
+	 * @param square
+	 *            the square the bishop is on
+	 * @param occupied
+	 *            bitmap of all occupied squares
+	 * @return bitmap of the attacks, including attacks on own pieces.
+	 */
+
+	public static long getBishopAttacks(int square, long occupied) {
+		return MAGIC_ATTACKS[BISHOP][OFFSETS[BISHOP][square]
+				+ (int) (((occupied & MASKS[BISHOP][square]) * BISHOP_MAGICS[square]) >>> SHIFTS[BISHOP][square])];
+	}
+
+	public static long getQueenAttacks(int square, long occupied) {
+		return getRookAttacks(square, occupied)
+				| getBishopAttacks(square, occupied);
+	}
+
+	/**
+	 * Same as getRookAttacks but the table index is found by compressing the
+	 * blockers instead of with a magic multiplication.
+	 */
+
+	public static long getRookAttacksCompress(int square, long occupied) {
+		return COMPRESS_ATTACKS[ROOK][OFFSETS[ROOK][square]
+				+ (int) compress(occupied, MASKS[ROOK][square])];
+	}
+
+	/**
+	 * Same as getBishopAttacks but the table index is found by compressing
+	 * the blockers instead of with a magic multiplication.
+	 */
+
+	public static long getBishopAttacksCompress(int square, long occupied) {
+		return COMPRESS_ATTACKS[BISHOP][OFFSETS[BISHOP][square]
+				+ (int) compress(occupied, MASKS[BISHOP][square])];
+	}
+
+	/**
+	 * Gather the bits of value selected by mask into the low bits of the
+	 * result. This calls Long.compress, which the JIT turns into a single
+	 * PEXT instruction, when the JDK has it. We still build for JDKs without
+	 * it, there it falls back to compressLoop.
+	 *
+	 * @param value
+	 *            the value to take bits from
+	 * @param mask
+	 *            the bits to take
+	 * @return the selected bits packed together
+	 */
+
+	public static long compress(long value, long mask) {
+		if (LONG_COMPRESS != null) {
+			try {
+				return (long) LONG_COMPRESS.invokeExact(value, mask);
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return compressLoop(value, mask);
+	}
+
+	/**
+	 * @return true if compress uses Long.compress, false if it falls back to
+	 *         compressLoop
+	 */
+
+	public static boolean isLongCompressPresent() {
+		return LONG_COMPRESS != null;
+	}
+
+	/**
+	 * The fallback for compress on JDKs without Long.compress, a loop over
+	 * the bits of the mask.
+	 *
+	 * @param value
+	 *            the value to take bits from
+	 * @param mask
+	 *            the bits to take
+	 * @return the selected bits packed together
+	 */
+
+	public static long compressLoop(long value, long mask) {
+		long result = 0;
+		long bit = 1;
+		for (long m = mask; m != 0; m &= (m - 1)) {
+			if ((value & m & -m) != 0) {
+				result |= bit;
+			}
+			bit <<= 1;
+		}
+		return result;
+	}
+
+	private static MethodHandle findLongCompress() {
+		try {
+			return MethodHandles.publicLookup().findStatic(Long.class,
+					"compress",
+					MethodType.methodType(long.class, long.class, long.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The attacks of a piece found by going through the blockers one by one
+	 * and removing the squares behind them. This is how getPieceAttacks used
+	 * to work, the tables are built with it.
+	 *
+	 * @param pieceType
+	 *            the type of piece.
+	 * @param from
+	 *            the square the piece will attack from.
+	 * @param occupiedBitMap
+	 *            a bitmap of all occupied positions on the board.
+	 * @return a bitmap of possible attacks.
+	 */
+
+	public static long getLoopAttacks(int pieceType, int from,
+			long occupiedBitMap) {
+		long ts = Commons.Bitmaps.ATTACKMAP[pieceType][from];
+		for (long b = occupiedBitMap
+				& Commons.Bitmaps.BLOCKERMAP[pieceType][from]; b != 0; b &= (b - 1)) {
+			int sq = Long.numberOfTrailingZeros(b);
+			ts &= ~Commons.Bitmaps.BEHINDMAP[from][sq];
+		}
+		return ts;
+	}
+
+	/**
+	 * Search for a magic number for a square. This is how the magic numbers
+	 * above was found.
+	 *
+	 * @param pieceType
+	 *            Commons.PieceType.ROOK or Commons.PieceType.BISHOP
+	 * @param square
+	 *            the square to find a magic for
+	 * @param random
+	 *            where to take the candidates from
+	 * @return a magic number that maps every set of blockers to an index with
+	 *         the right attacks.
+	 */
+
+	public static long findMagic(int pieceType, int square, Random random) {
+		long mask = Commons.Bitmaps.BLOCKERMAP[pieceType][square];
+		int bits = Long.bitCount(mask);
+		long[] blockers = new long[1 << bits];
+		long[] attacks = new long[1 << bits];
+		long[] used = new long[1 << bits];
+
+		long b = 0;
+		for (int i = 0; i < blockers.length; i++) {
+			blockers[i] = b;
+			attacks[i] = getLoopAttacks(pieceType, square, b);
+			b = (b - mask) & mask;
+		}
+
+		while (true) {
+			long magic = random.nextLong() & random.nextLong()
+					& random.nextLong();
+			if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+				continue;
+			}
+
+			Arrays.fill(used, -1);
+			boolean ok = true;
+			for (int i = 0; ok && i < blockers.length; i++) {
+				int index = (int) ((blockers[i] * magic) >>> (64 - bits));
+				if (used[index] == -1) {
+					used[index] = attacks[i];
+				} else if (used[index] != attacks[i]) {
+					ok = false;
+				}
+			}
+
+			if (ok) {
+				return magic;
+			}
+		}
+	}
+
+}
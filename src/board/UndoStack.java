@@ -0,0 +1,79 @@
+package board;
+
+/**
+ * Keeps what is needed to take back moves made with Board.makeMove. For
+ * every move the state rows of both colors (castling and en passant flags)
+ * and the piece that was captured are pushed onto primitive arrays, so
+ * making and unmaking moves does not allocate anything.
+ */
+
+public class UndoStack {
+
+	public static final int MAX_PLY = 1024;
+
+	final long[] blackState;
+	final long[] whiteState;
+
+	// The captured piece as type | square << 3, or -1 if nothing was captured
+	final int[] captured;
+
+	// The Zobrist key before the move, only kept by Position.makeMove
+	final long[] keys;
+
+	private int size;
+
+	public UndoStack() {
+		this(MAX_PLY);
+	}
+
+	public UndoStack(int capacity) {
+		blackState = new long[capacity];
+		whiteState = new long[capacity];
+		captured = new int[capacity];
+		keys = new long[capacity];
+	}
+
+	/**
+	 * Push an undo record.
+	 *
+	 * @return the index of the record
+	 */
+
+	int push(long black, long white, int capturedType, int capturedSquare) {
+		blackState[size] = black;
+		whiteState[size] = white;
+		captured[size] = capturedType == -1 ? -1 : capturedType
+				| capturedSquare << 3;
+		return size++;
+	}
+
+	/**
+	 * Pop the last undo record.
+	 *
+	 * @return the index of the record
+	 */
+
+	int pop() {
+		return --size;
+	}
+
+	/**
+	 * Get the type of piece captured by the last move made.
+	 *
+	 * @return the type of piece or -1 if nothing was captured.
+	 */
+
+	public int getCapturedType() {
+		int c = captured[size - 1];
+		return c == -1 ? -1 : c & 0x7;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+}
@@ -0,0 +1,117 @@
+package board;
+
+import java.util.Random;
+
+import utils.Commons;
+
+/**
+ * Zobrist keys, a 64 bit key for a position made by xor'ing together a
+ * random number for every piece on its square, the castling rights, the file
+ * of the en passant square and the side to move. Position keeps its key up
+ * to date by xor'ing in and out only what a move changes, getKey finds it
+ * from scratch.
+ */
+
+public class Zobrist {
+
+	static final long[][][] PIECES = new long[2][6][64];
+
+	// One key for each castling right, in FEN order KQkq
+	static final long[] CASTLING = new long[4];
+	static final long[] EN_PASSANT = new long[8];
+	static final long SIDE;
+
+	private static final long CASTLING_SQUARES = Commons.Bitmaps.RANKS[0]
+			| Commons.Bitmaps.RANKS[7];
+
+	// The king and rook squares of each castling right, in the same order
+	private static final long[] CASTLING_FLAGS = {
+			Board.masks[60] | Board.masks[63],
+			Board.masks[60] | Board.masks[56],
+			Board.masks[4] | Board.masks[7],
+			Board.masks[4] | Board.masks[0] };
+
+	static {
+		// Always the same seed so keys are the same between runs
+		Random random = new Random(0x2C6A1F3B5D7E9081L);
+
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 6; type++) {
+				for (int square = 0; square < 64; square++) {
+					PIECES[color][type][square] = random.nextLong();
+				}
+			}
+		}
+
+		for (int right = 0; right < 4; right++) {
+			CASTLING[right] = random.nextLong();
+		}
+
+		for (int file = 0; file < 8; file++) {
+			EN_PASSANT[file] = random.nextLong();
+		}
+
+		SIDE = random.nextLong();
+	}
+
+	/**
+	 * Find the key of a board from scratch.
+	 *
+	 * @param board
+	 *            the board
+	 * @param side
+	 *            the side to move
+	 * @return the key of the position
+	 */
+
+	public static long getKey(long[][] board, int side) {
+		long key = 0;
+
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 6; type++) {
+				for (long b = board[color][type]; b != 0; b &= (b - 1)) {
+					key ^= PIECES[color][type][Long.numberOfTrailingZeros(b)];
+				}
+			}
+		}
+
+		key ^= getStateKey(board[Commons.Color.BLACK][6],
+				board[Commons.Color.WHITE][6]);
+
+		if (side == Commons.Color.BLACK) {
+			key ^= SIDE;
+		}
+		return key;
+	}
+
+	/**
+	 * Get the part of the key that comes from the state rows, board[color][6].
+	 * The rows keep a flag on the king and on each rook that have not moved,
+	 * a side can only castle if both its king and that rook are still
+	 * flagged. Only those rights are hashed, so a flag left on a rook after
+	 * its king moved does not change the key.
+	 *
+	 * @return the key of the castling rights and en passant file
+	 */
+
+	public static long getStateKey(long blackState, long whiteState) {
+		long key = 0;
+		long state = blackState | whiteState;
+
+		for (int right = 0; right < 4; right++) {
+			if ((state & CASTLING_FLAGS[right]) == CASTLING_FLAGS[right]) {
+				key ^= CASTLING[right];
+			}
+		}
+
+		for (long b = state & ~CASTLING_SQUARES; b != 0; b &= (b - 1)) {
+			key ^= EN_PASSANT[Long.numberOfTrailingZeros(b) & 7];
+		}
+		return key;
+	}
+
+	public static long getPieceKey(int color, int type, int square) {
+		return PIECES[color][type][square];
+	}
+
+}
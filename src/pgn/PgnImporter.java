@@ -0,0 +1,303 @@
+package pgn;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import board.Board;
+import board.Fen;
+import board.MoveList;
+import board.Perft;
+import board.San;
+import utils.Commons;
+
+/**
+ * Replays every game of a PGN stream, checking each move is legal and making
+ * it with Board.move. The calling thread reads games and hands them in
+ * batches to a pool of workers through a bounded queue, so reading waits
+ * when the workers fall behind and only a few batches are in memory. A game
+ * that can not be read or has an illegal move is reported to the listener
+ * and the rest of the stream goes on.
+ */
+
+public class PgnImporter {
+
+	/**
+	 * Told about every game, by the worker that replayed it, so it has to be
+	 * safe to call from many threads. Games are numbered from 0 in the order
+	 * of the stream.
+	 */
+
+	public interface Listener {
+
+		/**
+		 * @param board
+		 *            the position after the last move, only valid until the
+		 *            method returns
+		 * @param side
+		 *            the side to move after the last move
+		 * @param plies
+		 *            the number of moves made
+		 */
+
+		void gameReplayed(long number, long[][] board, int side, int plies);
+
+		void gameFailed(long number, String error);
+	}
+
+	private static final int BATCH_SIZE = 256;
+
+	private static final Batch END = new Batch(-1);
+
+	private static final long[][] START = Board.initBitBoard();
+
+	private static final String[] RESULTS = { "1-0", "0-1", "1/2-1/2", "*" };
+
+	private final int threads;
+
+	public PgnImporter(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1: "
+					+ threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Replay all the games of a stream.
+	 *
+	 * @param in
+	 *            the PGN
+	 * @param listener
+	 *            told about every game
+	 * @param report
+	 *            where to print the number of games per minute
+	 * @return the number of games read
+	 */
+
+	public long run(Reader in, Listener listener, PrintStream report)
+			throws IOException {
+		long time = System.nanoTime();
+		BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(threads * 2);
+		AtomicLong failed = new AtomicLong();
+		AtomicLong plies = new AtomicLong();
+
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Worker(queue, listener, failed, plies),
+					"pgn-" + i);
+			workers[i].start();
+		}
+
+		long games = 0;
+		PgnReader reader = new PgnReader(in);
+		boolean finished = false;
+		try {
+			Batch batch = new Batch(0);
+			for (String game; (game = reader.nextGame()) != null; games++) {
+				batch.games.add(game);
+				if (batch.games.size() == BATCH_SIZE) {
+					queue.put(batch);
+					batch = new Batch(games + 1);
+				}
+			}
+			queue.put(batch);
+
+			for (int i = 0; i < threads; i++) {
+				queue.put(END);
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			finished = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} finally {
+			// When reading failed the workers still wait for games, they
+			// would keep the JVM alive
+			if (!finished) {
+				for (Thread worker : workers) {
+					worker.interrupt();
+				}
+			}
+		}
+
+		time = System.nanoTime() - time;
+		report.printf(
+				"%d games, %d failed, %d moves in %d ms, %d games/min%n",
+				games, failed.get(), plies.get(), time / 1000000,
+				Perft.nodesPerSecond(games, time) * 60);
+		return games;
+	}
+
+	private static class Batch {
+		final long first;
+		final List<String> games = new ArrayList<String>(BATCH_SIZE);
+
+		Batch(long first) {
+			this.first = first;
+		}
+	}
+
+	private static class Worker implements Runnable {
+
+		private final BlockingQueue<Batch> queue;
+		private final Listener listener;
+		private final AtomicLong failed;
+		private final AtomicLong plies;
+
+		private final long[][] board = new long[2][7];
+		private final MoveList moves = new MoveList();
+
+		Worker(BlockingQueue<Batch> queue, Listener listener,
+				AtomicLong failed, AtomicLong plies) {
+			this.queue = queue;
+			this.listener = listener;
+			this.failed = failed;
+			this.plies = plies;
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (Batch batch; (batch = queue.take()) != END;) {
+					for (int i = 0; i < batch.games.size(); i++) {
+						replay(batch.first + i, batch.games.get(i));
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void replay(long number, String game) {
+			try {
+				int side = Commons.Color.WHITE;
+				int ply = 0;
+				Board.copyBoard(START, board);
+
+				for (int i = 0, end = game.length(); i < end;) {
+					char c = game.charAt(i);
+
+					if (c <= ' ') {
+						i++;
+					} else if (c == '[') {
+						int close = game.indexOf(']', i);
+						if (close == -1) {
+							throw new IllegalArgumentException("Unclosed tag");
+						}
+						side = readTag(game, i + 1, close, side);
+						i = close + 1;
+					} else if (c == '{') {
+						i = skipTo(game, i, '}');
+					} else if (c == ';' || c == '%') {
+						i = skipTo(game, i, '\n');
+					} else if (c == '(') {
+						i = skipVariation(game, i);
+					} else if (c == ')') {
+						i++;
+					} else {
+						int start = i;
+						while (i < end && !isSeparator(game.charAt(i))) {
+							i++;
+						}
+
+						if (isResult(game, start, i)) {
+							break;
+						}
+
+						// Move numbers like 12. or 12... can be stuck to the
+						// move, digits not followed by a dot are castling
+						// written with zeros
+						int digits = start;
+						while (digits < i
+								&& Character.isDigit(game.charAt(digits))) {
+							digits++;
+						}
+						if (digits == i || game.charAt(digits) == '.') {
+							start = digits;
+						}
+						while (start < i && game.charAt(start) == '.') {
+							start++;
+						}
+						if (start == i || game.charAt(start) == '$') {
+							continue;
+						}
+
+						int move = San.parse(game, start, i, side, board,
+								moves);
+						Board.move(move, side, board);
+						side = Board.oppositeSide(side);
+						ply++;
+					}
+				}
+
+				plies.addAndGet(ply);
+				listener.gameReplayed(number, board, side, ply);
+			} catch (RuntimeException e) {
+				failed.incrementAndGet();
+				listener.gameFailed(number, e.getMessage());
+			}
+		}
+
+		/**
+		 * Set up the board from a FEN tag, other tags are skipped.
+		 *
+		 * @return the side to move
+		 */
+
+		private int readTag(String game, int start, int end, int side) {
+			if (!game.startsWith("FEN", start)) {
+				return side;
+			}
+
+			int open = game.indexOf('"', start);
+			int close = open == -1 ? -1 : game.indexOf('"', open + 1);
+			if (close == -1 || close > end) {
+				throw new IllegalArgumentException("Bad FEN tag");
+			}
+			return Fen.parse(game, open + 1, close, board);
+		}
+
+		private static int skipTo(String game, int i, char c) {
+			int found = game.indexOf(c, i);
+			return found == -1 ? game.length() : found + 1;
+		}
+
+		private static int skipVariation(String game, int i) {
+			int depth = 0;
+			for (; i < game.length(); i++) {
+				char c = game.charAt(i);
+				if (c == '{') {
+					i = skipTo(game, i, '}') - 1;
+				} else if (c == '(') {
+					depth++;
+				} else if (c == ')' && --depth == 0) {
+					return i + 1;
+				}
+			}
+			return i;
+		}
+
+		private static boolean isSeparator(char c) {
+			return c <= ' ' || c == '{' || c == '(' || c == ')' || c == ';';
+		}
+
+		private static boolean isResult(String game, int start, int end) {
+			for (String result : RESULTS) {
+				if (end - start == result.length()
+						&& game.startsWith(result, start)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package pgn;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a PGN stream into games without reading more than one game at a
+ * time. A game is its tag pairs followed by its move text, a new game starts
+ * at the first tag pair after some move text.
+ */
+
+public class PgnReader {
+
+	private final BufferedReader in;
+
+	// The first line of the next game, read while looking for the end
+	private String next;
+
+	public PgnReader(Reader in) {
+		this.in = in instanceof BufferedReader ? (BufferedReader) in
+				: new BufferedReader(in, 1 << 16);
+	}
+
+	/**
+	 * Read the next game.
+	 *
+	 * @return the text of the game or null at the end of the stream
+	 */
+
+	public String nextGame() throws IOException {
+		StringBuilder game = new StringBuilder();
+		boolean moves = false;
+		boolean empty = true;
+
+		String line = next != null ? next : in.readLine();
+		next = null;
+		for (; line != null; line = in.readLine()) {
+			boolean tag = line.startsWith("[");
+			if (tag && moves) {
+				next = line;
+				break;
+			}
+
+			if (!line.trim().isEmpty()) {
+				moves |= !tag;
+				empty = false;
+			}
+			game.append(line).append('\n');
+		}
+
+		return empty ? null : game.toString();
+	}
+
+}
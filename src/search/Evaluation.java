@@ -0,0 +1,79 @@
+package search;
+
+import board.PieceSquareTables;
+import board.Position;
+import utils.Commons;
+
+/**
+ * Scores a position in centipawns by its material and where the pieces
+ * stand. The piece-square values of the middlegame and the endgame are
+ * blended by the game phase, so the king hides early and walks to the
+ * center late, see PieceSquareTables.
+ *
+ * Position keeps the sums up to date as moves are made, so scoring one costs
+ * the same however many pieces there are. Scoring a board finds the same
+ * sums from scratch, to check them.
+ */
+
+public class Evaluation {
+
+	// Indexed by Commons.PieceType
+	public static final int[] PIECE_VALUES = PieceSquareTables.VALUES;
+
+	/**
+	 * Score a position from the sums it keeps.
+	 *
+	 * @param position
+	 *            the position
+	 * @param side
+	 *            the side to score for
+	 * @return the score, positive when side is ahead
+	 */
+
+	public static int evaluate(Position position, int side) {
+		int score = position.getMaterial()
+				+ blend(position.getMiddlegame(), position.getEndgame(),
+						position.getPhase());
+		return side == Commons.Color.WHITE ? score : -score;
+	}
+
+	/**
+	 * Score a board by going through all its pieces.
+	 *
+	 * @param board
+	 *            the board
+	 * @param side
+	 *            the side to score for
+	 * @return the score, positive when side is ahead, the same as for a
+	 *         position of the board
+	 */
+
+	public static int evaluate(long[][] board, int side) {
+		int material = 0;
+		int middlegame = 0;
+		int endgame = 0;
+		int phase = 0;
+		for (int color = 0; color < 2; color++) {
+			for (int type = 0; type < 6; type++) {
+				for (long b = board[color][type]; b != 0; b &= (b - 1)) {
+					int square = Long.numberOfTrailingZeros(b);
+					material += PieceSquareTables.MATERIAL[color][type];
+					middlegame += PieceSquareTables.MIDDLEGAME[color][type][square];
+					endgame += PieceSquareTables.ENDGAME[color][type][square];
+					phase += PieceSquareTables.PHASES[type];
+				}
+			}
+		}
+
+		int score = material + blend(middlegame, endgame, phase);
+		return side == Commons.Color.WHITE ? score : -score;
+	}
+
+	private static int blend(int middlegame, int endgame, int phase) {
+		phase = Math.min(phase, PieceSquareTables.MAX_PHASE);
+		return (middlegame * phase + endgame
+				* (PieceSquareTables.MAX_PHASE - phase))
+				/ PieceSquareTables.MAX_PHASE;
+	}
+
+}
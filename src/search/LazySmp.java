@@ -0,0 +1,147 @@
+package search;
+
+import java.io.PrintStream;
+
+import board.Board;
+import board.Perft;
+import board.Position;
+
+/**
+ * Searches a position on many threads at once. Every thread runs its own
+ * Search on its own copy of the board, and they only share the
+ * transposition table. What one thread finds is used by the others through
+ * the table, so the main thread gets to its depth faster. Half the helpers
+ * start one ply deeper so the threads are not all searching the same depth.
+ *
+ * The main search runs on the calling thread and decides the move and what
+ * is reported, the helpers are stopped when it is done.
+ */
+
+public class LazySmp {
+
+	private final int threads;
+	private final TranspositionTable table;
+
+	private long nodes;
+	private int score;
+
+	/**
+	 * @param threads
+	 *            the number of threads, the calling thread included, at
+	 *            least 1
+	 * @param table
+	 *            the table shared by all threads
+	 */
+
+	public LazySmp(int threads, TranspositionTable table) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1: "
+					+ threads);
+		}
+		this.threads = threads;
+		this.table = table;
+	}
+
+	/**
+	 * Search a position to a depth.
+	 *
+	 * @param board
+	 *            the board, it is not changed
+	 * @param side
+	 *            the side to move
+	 * @param out
+	 *            where the main search prints its iterations, or null
+	 * @return the best move, or 0 if there are no moves
+	 */
+
+	public int search(long[][] board, int side, int depth, PrintStream out) {
+		table.newSearch();
+
+		Search main = new Search(new Position(Board.deepCopy2DArray(board),
+				side), table);
+		main.setMaxDepth(depth);
+
+		final Search[] helpers = new Search[threads - 1];
+		Thread[] workers = new Thread[helpers.length];
+		for (int i = 0; i < helpers.length; i++) {
+			final Search helper = new Search(new Position(
+					Board.deepCopy2DArray(board), side), table);
+			helper.setStartDepth(1 + i % 2);
+			helpers[i] = helper;
+
+			workers[i] = new Thread(() -> helper.search(null), "smp-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+
+		int move = main.search(out);
+
+		score = main.getScore();
+		nodes = main.getNodes();
+		for (int i = 0; i < helpers.length; i++) {
+			helpers[i].stop();
+			try {
+				workers[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			nodes += helpers[i].getNodes();
+		}
+		return move;
+	}
+
+	/**
+	 * @return the score of the main search in the last search
+	 */
+
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * @return the nodes searched by all threads in the last search
+	 */
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Search a position to a depth with 1, 2, 4 and so on up to maxThreads
+	 * threads, each time with an empty table, and print the time to depth,
+	 * the nodes per second of all threads together and how much faster than
+	 * one thread it got to the depth.
+	 */
+
+	public static void runScaling(long[][] board, int side, int depth,
+			int maxThreads, int megabytes, PrintStream out) {
+		if (maxThreads < 1) {
+			throw new IllegalArgumentException("Threads must be at least 1: "
+					+ maxThreads);
+		}
+		TranspositionTable table = new TranspositionTable(megabytes);
+		long single = 0;
+
+		for (int threads = 1;; threads = Math.min(threads * 2, maxThreads)) {
+			table.clear();
+			LazySmp smp = new LazySmp(threads, table);
+
+			long time = System.nanoTime();
+			smp.search(board, side, depth, null);
+			time = System.nanoTime() - time;
+
+			if (threads == 1) {
+				single = time;
+			}
+			out.printf("threads %2d depth %d %12d nodes %8d ms %10d nps %5.2fx%n",
+					threads, depth, smp.getNodes(), time / 1000000,
+					Perft.nodesPerSecond(smp.getNodes(), time),
+					(double) single / time);
+
+			if (threads == maxThreads) {
+				break;
+			}
+		}
+	}
+
+}
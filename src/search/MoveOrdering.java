@@ -0,0 +1,203 @@
+package search;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+import board.Position;
+import utils.Commons;
+
+/**
+ * Orders the moves of every ply of a search so the ones most likely to cause
+ * a cutoff are searched first. The moves are scored when they are generated
+ * and then picked one at a time, so when the first move cuts off the rest
+ * are never sorted. In order of score they are
+ *
+ * <pre>
+ * the move from the principal variation or the transposition table
+ * captures and queen promotions, most valuable victim first and least
+ * valuable attacker first for the same victim (MVV-LVA)
+ * the two killer moves of the ply, quiet moves that cut off at the same ply
+ * the counter move, the quiet move that last cut off after the previous move
+ * other moves by their history, how often and deep they cut off before
+ * </pre>
+ *
+ * All tables are primitive arrays kept for one search thread.
+ */
+
+public class MoveOrdering {
+
+	private static final int FIRST = 1 << 30;
+	private static final int CAPTURE = 1 << 26;
+	private static final int KILLER = 1 << 25;
+	private static final int COUNTER = 1 << 24;
+	private static final int HISTORY_MAX = 1 << 20;
+
+	// Higher for more valuable pieces, indexed by Commons.PieceType
+	private static final int[] RANK = { 6, 5, 4, 3, 2, 1 };
+
+	private final int[][] scores = new int[Search.MAX_PLY][MoveList.MAX_MOVES];
+	private final int[][] killers = new int[Search.MAX_PLY][2];
+
+	// [side][from][to] and the counter move of [side][from][to]
+	private final int[][][] history = new int[2][64][64];
+	private final int[][][] counterMoves = new int[2][64][64];
+
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	/**
+	 * Get ready for a new search, the history of the last one counts half.
+	 */
+
+	public void newSearch() {
+		for (int ply = 0; ply < Search.MAX_PLY; ply++) {
+			killers[ply][0] = 0;
+			killers[ply][1] = 0;
+		}
+		ageHistory();
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+	}
+
+	/**
+	 * Score the moves of a ply.
+	 *
+	 * @param first
+	 *            the move to search first, or 0
+	 * @param previous
+	 *            the move made to get to this ply, or 0 at the root
+	 */
+
+	public void score(MoveList list, int ply, Position position, int first,
+			int previous) {
+		int side = position.getSide();
+		int[] plyScores = scores[ply];
+		int counter = previous == 0 ? 0 : counterMoves[side][Move
+				.fromSquare(previous)][Move.toSquare(previous)];
+
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			int victim = See.getCaptured(move, position);
+
+			if (move == first) {
+				plyScores[i] = FIRST;
+			} else if (victim != -1) {
+				plyScores[i] = CAPTURE + RANK[victim] * 8
+						- RANK[getMoved(move)];
+			} else if (Move.isPromotion(move)
+					&& Move.pieceType(move) == Commons.PieceType.QUEEN) {
+				plyScores[i] = CAPTURE + RANK[Commons.PieceType.QUEEN] * 8;
+			} else if (move == killers[ply][0]) {
+				plyScores[i] = KILLER + 1;
+			} else if (move == killers[ply][1]) {
+				plyScores[i] = KILLER;
+			} else if (move == counter) {
+				plyScores[i] = COUNTER;
+			} else {
+				plyScores[i] = history[side][Move.fromSquare(move)][Move
+						.toSquare(move)];
+			}
+		}
+	}
+
+	/**
+	 * Find the best scored move from index and on and swap it to index.
+	 *
+	 * @return the move at index
+	 */
+
+	public int pick(MoveList list, int index, int ply) {
+		int[] plyScores = scores[ply];
+		int best = index;
+		for (int i = index + 1; i < list.size(); i++) {
+			if (plyScores[i] > plyScores[best]) {
+				best = i;
+			}
+		}
+
+		if (best != index) {
+			list.swap(index, best);
+			int score = plyScores[index];
+			plyScores[index] = plyScores[best];
+			plyScores[best] = score;
+		}
+		return list.get(index);
+	}
+
+	/**
+	 * Remember a move that caused a beta cutoff.
+	 *
+	 * @param index
+	 *            the index the move was picked at, 0 if it was the first
+	 * @param position
+	 *            the position the move was made from
+	 */
+
+	public void cutoff(int move, int index, int ply, int depth,
+			int previous, Position position) {
+		cutoffs++;
+		if (index == 0) {
+			firstMoveCutoffs++;
+		}
+
+		if (See.getCaptured(move, position) != -1 || Move.isPromotion(move)) {
+			return;
+		}
+
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+
+		int side = position.getSide();
+		if (previous != 0) {
+			counterMoves[side][Move.fromSquare(previous)][Move
+					.toSquare(previous)] = move;
+		}
+
+		int[] from = history[side][Move.fromSquare(move)];
+		from[Move.toSquare(move)] += depth * depth;
+		if (from[Move.toSquare(move)] > HISTORY_MAX) {
+			ageHistory();
+		}
+	}
+
+	/**
+	 * @param slot
+	 *            0 for the last killer of the ply, 1 for the one before
+	 * @return a killer move of a ply, or 0
+	 */
+
+	public int getKiller(int ply, int slot) {
+		return killers[ply][slot];
+	}
+
+	/**
+	 * @return the part of the beta cutoffs that came from the first move
+	 *         searched, 1 for perfect ordering.
+	 */
+
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	private void ageHistory() {
+		for (int side = 0; side < 2; side++) {
+			for (int from = 0; from < 64; from++) {
+				for (int to = 0; to < 64; to++) {
+					history[side][from][to] >>= 1;
+				}
+			}
+		}
+	}
+
+	private static int getMoved(int move) {
+		return Move.isPromotion(move) ? Commons.PieceType.PAWN : Move
+				.pieceType(move);
+	}
+
+}
@@ -0,0 +1,186 @@
+package search;
+
+import board.Board;
+import board.Move;
+import board.MoveList;
+import board.Position;
+
+/**
+ * Hands out the legal moves of a position in stages, generating each stage
+ * only when the one before it is used up:
+ *
+ * <pre>
+ * the move from the principal variation or the transposition table
+ * captures and promotions, ordered by MoveOrdering
+ * the two killer moves of the ply
+ * the other quiet moves, ordered by MoveOrdering
+ * </pre>
+ *
+ * Most nodes that cut off do it on the first move or a capture, and then
+ * the quiet moves are never generated. The first move and the killers come
+ * from other positions so they are checked to be legal here first, and are
+ * skipped when their stage would hand them out again.
+ *
+ * The quiescence search only wants the captures and promotions, it resets
+ * the picker with resetCaptures.
+ *
+ * There is one picker for every ply, reset for every position searched.
+ */
+
+public class MovePicker {
+
+	private static final int FIRST = 0;
+	private static final int GENERATE_CAPTURES = 1;
+	private static final int CAPTURES = 2;
+	private static final int KILLERS = 3;
+	private static final int GENERATE_QUIETS = 4;
+	private static final int QUIETS = 5;
+	private static final int DONE = 6;
+
+	private final MoveOrdering ordering;
+	private final int ply;
+	private final MoveList list = new MoveList();
+	private final MoveList legal = new MoveList();
+
+	private Position position;
+	private int side;
+	private int first;
+	private int previous;
+	private int killer1;
+	private int killer2;
+	private int stage;
+	private int index;
+	private boolean capturesOnly;
+
+	public MovePicker(MoveOrdering ordering, int ply) {
+		this.ordering = ordering;
+		this.ply = ply;
+	}
+
+	/**
+	 * Start handing out the moves of a position.
+	 *
+	 * @param first
+	 *            the move to hand out first if it is legal, or 0
+	 * @param previous
+	 *            the move made to get to the position, or 0 at the root
+	 */
+
+	public void reset(Position position, int first, int previous) {
+		this.position = position;
+		this.side = position.getSide();
+		this.first = first;
+		this.previous = previous;
+		killer1 = ordering.getKiller(ply, 0);
+		killer2 = ordering.getKiller(ply, 1);
+		stage = FIRST;
+		index = 0;
+		capturesOnly = false;
+	}
+
+	/**
+	 * Start handing out only the captures and promotions of a position.
+	 */
+
+	public void resetCaptures(Position position, int previous) {
+		reset(position, 0, previous);
+		stage = GENERATE_CAPTURES;
+		capturesOnly = true;
+	}
+
+	/**
+	 * Each stage falls through to the next one when it has no move left.
+	 *
+	 * @return the next legal move, or 0 when there are no more
+	 */
+
+	@SuppressWarnings("fallthrough")
+	public int next() {
+		switch (stage) {
+		case FIRST:
+			stage = GENERATE_CAPTURES;
+			if (first != 0 && isLegal(first)) {
+				return first;
+			}
+			first = 0;
+			// Fall through
+		case GENERATE_CAPTURES:
+			list.clear();
+			Board.getCapturesForColor(side, position, list);
+			ordering.score(list, ply, position, 0, previous);
+			index = 0;
+			stage = CAPTURES;
+			// Fall through
+		case CAPTURES:
+			while (index < list.size()) {
+				int move = ordering.pick(list, index++, ply);
+				if (move != first) {
+					return move;
+				}
+			}
+			if (capturesOnly) {
+				stage = DONE;
+				return 0;
+			}
+			stage = KILLERS;
+			index = 0;
+			// Fall through
+		case KILLERS:
+			while (index < 2) {
+				int killer = index++ == 0 ? killer1 : killer2;
+				if (killer != 0 && killer != first && isQuiet(killer)
+						&& isLegal(killer)) {
+					return killer;
+				}
+			}
+			stage = GENERATE_QUIETS;
+			// Fall through
+		case GENERATE_QUIETS:
+			list.clear();
+			Board.getQuietMovesForColor(side, position, list);
+			ordering.score(list, ply, position, 0, previous);
+			index = 0;
+			stage = QUIETS;
+			// Fall through
+		case QUIETS:
+			while (index < list.size()) {
+				int move = ordering.pick(list, index++, ply);
+				if (move != first && move != killer1 && move != killer2) {
+					return move;
+				}
+			}
+			stage = DONE;
+			// Fall through
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * A killer that would capture something here is a capture and was
+	 * handed out already.
+	 */
+
+	private boolean isQuiet(int move) {
+		return !Move.isPromotion(move)
+				&& (position.getBitMap() & Board.masks[Move.toSquare(move)]) == 0;
+	}
+
+	/**
+	 * Check a move from another position by generating the legal moves of
+	 * the piece on its square only.
+	 */
+
+	private boolean isLegal(int move) {
+		legal.clear();
+		Board.getValidMovesForSquare(Move.fromSquare(move), side, position,
+				legal);
+		for (int i = 0; i < legal.size(); i++) {
+			if (legal.get(i) == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,502 @@
+package search;
+
+import java.io.PrintStream;
+
+import board.Board;
+import board.GameHistory;
+import board.Move;
+import board.Perft;
+import board.Position;
+import board.UndoStack;
+import utils.Commons;
+
+/**
+ * Finds the best move of a position with a negamax alpha-beta search,
+ * deepened one ply at a time until the depth or node limit is reached. The
+ * principal variation of each iteration is searched first in the next one,
+ * the other moves are handed out in stages by MovePicker.
+ * With a transposition table, positions already searched deep enough are not
+ * searched again and the best move found before is tried first. Many
+ * searches can share one table, see LazySmp.
+ *
+ * At the end of the depth only captures and promotions are searched, until
+ * the position is quiet, so the score is not that of a position in the
+ * middle of an exchange. Captures that lose material by static exchange
+ * evaluation are skipped there, and so are captures that can not bring the
+ * score up to alpha even winning the piece.
+ *
+ * A position that was there before, in the game or in the line searched,
+ * and a position after fifty moves without a pawn move or capture are
+ * scored as a draw. Give the search the history of the game with
+ * setHistory, otherwise it starts one from the position.
+ *
+ * The position is changed while searching and is the same again when
+ * search returns.
+ */
+
+public class Search {
+
+	public static final int MAX_PLY = 64;
+
+	public static final int INFINITY = 32000;
+	public static final int MATE = 30000;
+
+	// What the position can be worth more than the piece captured, in the
+	// quiescence search
+	private static final int DELTA_MARGIN = 200;
+
+	private final Position position;
+	private final TranspositionTable table;
+	private final UndoStack undo = new UndoStack(MAX_PLY);
+	private final MoveOrdering ordering = new MoveOrdering();
+	private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+	private final See see = new See();
+	private GameHistory history = new GameHistory();
+	private boolean ownHistory = true;
+
+	// The move made at every ply of the line being searched
+	private final int[] played = new int[MAX_PLY];
+
+	// pv[ply] is the best line found from ply, pvLength[ply] long
+	private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+	private final int[] pvLength = new int[MAX_PLY];
+
+	// The principal variation of the last finished iteration
+	private int[] principalVariation = new int[0];
+	private boolean followPv;
+
+	private int startDepth = 1;
+	private int maxDepth = MAX_PLY - 1;
+	private long maxNodes = Long.MAX_VALUE;
+	private boolean fullEvaluation;
+
+	private volatile boolean stopped;
+	private long nodes;
+	private long quiescenceNodes;
+	private int score;
+	private int depth;
+
+	public Search(Position position) {
+		this(position, null);
+	}
+
+	/**
+	 * @param table
+	 *            the transposition table or null to search without one, call
+	 *            newSearch on it before every search.
+	 */
+
+	public Search(Position position, TranspositionTable table) {
+		this.position = position;
+		this.table = table;
+		for (int i = 0; i < MAX_PLY; i++) {
+			pickers[i] = new MovePicker(ordering, i);
+		}
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+	}
+
+	/**
+	 * Start iterative deepening at another depth than 1, so searches sharing
+	 * a table do not all search the same depth at the same time.
+	 */
+
+	public void setStartDepth(int startDepth) {
+		this.startDepth = Math.max(1, startDepth);
+	}
+
+	public void setMaxNodes(long maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Score every leaf by going through all pieces on the board instead of
+	 * using the sums the position keeps. Slower, but with the same scores it
+	 * has to search the same tree, which checks the sums are right.
+	 */
+
+	public void setFullEvaluation(boolean fullEvaluation) {
+		this.fullEvaluation = fullEvaluation;
+	}
+
+	/**
+	 * Use the history of the game to find repetitions, its current position
+	 * has to be the position searched. It is the same again when search
+	 * returns.
+	 */
+
+	public void setHistory(GameHistory history) {
+		this.history = history;
+		ownHistory = false;
+	}
+
+	/**
+	 * Stop the search as soon as possible, from another thread. If it has
+	 * not started yet it stops right away when it does.
+	 */
+
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Search the position of the side to move.
+	 *
+	 * @param out
+	 *            where to print a line for every iteration, or null
+	 * @return the best move or 0 if there are no moves
+	 */
+
+	public int search(PrintStream out) {
+		nodes = 0;
+		quiescenceNodes = 0;
+		score = 0;
+		depth = 0;
+		principalVariation = new int[0];
+		ordering.newSearch();
+		if (ownHistory) {
+			history.reset(position.getKey(), 0);
+		}
+		long time = System.nanoTime();
+
+		for (int d = Math.min(startDepth, maxDepth); d <= maxDepth; d++) {
+			followPv = true;
+			int s = alphaBeta(d, -INFINITY, INFINITY, 0);
+
+			// A search that was stopped has not looked at every move, only
+			// use it when there is nothing better
+			if (stopped) {
+				if (depth == 0 && pvLength[0] > 0) {
+					principalVariation = new int[] { pv[0][0] };
+				}
+				break;
+			}
+
+			score = s;
+			depth = d;
+			principalVariation = new int[pvLength[0]];
+			System.arraycopy(pv[0], 0, principalVariation, 0, pvLength[0]);
+
+			if (out != null) {
+				long elapsed = System.nanoTime() - time;
+				out.printf("depth %d score %d nodes %d qnodes %d nps %d first %.1f%% pv %s%n",
+						d, score, nodes, quiescenceNodes,
+						Perft.nodesPerSecond(nodes, elapsed),
+						ordering.getFirstMoveCutoffRate() * 100,
+						getPrincipalVariationString());
+			}
+
+			// No need to go deeper once a mate is found
+			if (Math.abs(score) >= MATE - MAX_PLY || pvLength[0] == 0) {
+				break;
+			}
+		}
+
+		stopped = false;
+		return getBestMove();
+	}
+
+	private int alphaBeta(int depth, int alpha, int beta, int ply) {
+		pvLength[ply] = 0;
+		nodes++;
+		if (nodes >= maxNodes) {
+			stopped = true;
+		}
+		if (stopped) {
+			return 0;
+		}
+
+		int side = position.getSide();
+		if (ply > 0 && (history.isRepetition() || isFiftyMoves(side, ply))) {
+			return 0;
+		}
+
+		if (depth == 0 || ply == MAX_PLY - 1) {
+			return quiesce(alpha, beta, ply);
+		}
+
+		long key = position.getKey();
+		int hashMove = 0;
+		if (table != null) {
+			long entry = table.probe(key);
+			if (entry != 0) {
+				hashMove = TranspositionTable.getMove(entry);
+
+				// Not at the root, it needs a move and the principal variation
+				if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+					int s = fromTable(TranspositionTable.getScore(entry), ply);
+					int bound = TranspositionTable.getBound(entry);
+					if (bound == TranspositionTable.BOUND_EXACT
+							|| (bound == TranspositionTable.BOUND_LOWER
+									&& s >= beta)
+							|| (bound == TranspositionTable.BOUND_UPPER
+									&& s <= alpha)) {
+						return s;
+					}
+				}
+			}
+		}
+
+		int first = hashMove;
+		if (followPv) {
+			followPv = ply < principalVariation.length;
+			if (followPv) {
+				first = principalVariation[ply];
+			}
+		}
+
+		int previous = ply > 0 ? played[ply - 1] : 0;
+		MovePicker picker = pickers[ply];
+		picker.reset(position, first, previous);
+
+		int alphaBefore = alpha;
+		int bestMove = 0;
+		int best = -INFINITY;
+		int i = 0;
+		for (int move; (move = picker.next()) != 0; i++) {
+			played[ply] = move;
+
+			position.makeMove(move, side, undo);
+			history.push(move, undo.getCapturedType() != -1,
+					position.getKey());
+			int s = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+			history.pop();
+			position.unmakeMove(move, side, undo);
+
+			if (stopped) {
+				return 0;
+			}
+
+			if (s > best) {
+				best = s;
+				bestMove = move;
+			}
+
+			if (s > alpha) {
+				alpha = s;
+				pv[ply][0] = move;
+				System.arraycopy(pv[ply + 1], 0, pv[ply], 1,
+						pvLength[ply + 1]);
+				pvLength[ply] = pvLength[ply + 1] + 1;
+
+				if (alpha >= beta) {
+					ordering.cutoff(move, i, ply, depth, previous, position);
+					break;
+				}
+			}
+		}
+
+		if (bestMove == 0) {
+			return isInCheck(side) ? -MATE + ply : 0;
+		}
+
+		if (table != null) {
+			int bound = best >= beta ? TranspositionTable.BOUND_LOWER
+					: best > alphaBefore ? TranspositionTable.BOUND_EXACT
+							: TranspositionTable.BOUND_UPPER;
+			table.store(key, bound == TranspositionTable.BOUND_UPPER ? 0
+					: bestMove, toTable(best, ply), depth, bound);
+		}
+		return best;
+	}
+
+	/**
+	 * Search captures and promotions only, the side to move can also stand
+	 * pat and take the static score when that is good enough. In check all
+	 * evasions are searched instead.
+	 */
+
+	private int quiesce(int alpha, int beta, int ply) {
+		pvLength[ply] = 0;
+		nodes++;
+		quiescenceNodes++;
+		if (nodes >= maxNodes) {
+			stopped = true;
+		}
+		if (stopped) {
+			return 0;
+		}
+
+		int side = position.getSide();
+		int best = fullEvaluation ? Evaluation.evaluate(position.getBoard(),
+				side) : Evaluation.evaluate(position, side);
+		if (ply == MAX_PLY - 1) {
+			return best;
+		}
+
+		// In check standing pat is no option, every evasion is searched and
+		// without one it is mate
+		boolean inCheck = isInCheck(side);
+		int standPat = best;
+		MovePicker picker = pickers[ply];
+		int previous = ply > 0 ? played[ply - 1] : 0;
+		if (inCheck) {
+			best = -MATE + ply;
+			picker.reset(position, 0, previous);
+		} else {
+			if (best >= beta) {
+				return best;
+			}
+			if (best > alpha) {
+				alpha = best;
+			}
+			picker.resetCaptures(position, previous);
+		}
+
+		for (int move; (move = picker.next()) != 0;) {
+			if (!inCheck && isFutile(move, standPat, alpha)) {
+				continue;
+			}
+			played[ply] = move;
+
+			// Quiescence does not look for repetitions, so the moves are not
+			// kept in the history
+			position.makeMove(move, side, undo);
+			int s = -quiesce(-beta, -alpha, ply + 1);
+			position.unmakeMove(move, side, undo);
+
+			if (stopped) {
+				return 0;
+			}
+
+			if (s > best) {
+				best = s;
+				if (s > alpha) {
+					alpha = s;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * A capture that can not bring the score up to alpha even when it wins
+	 * its piece for free, or that loses material.
+	 */
+
+	private boolean isFutile(int move, int standPat, int alpha) {
+		if (!Move.isPromotion(move)) {
+			int captured = See.getCaptured(move, position);
+			if (standPat + Evaluation.PIECE_VALUES[captured]
+					+ DELTA_MARGIN <= alpha) {
+				return true;
+			}
+		}
+		return see.evaluate(position, move) < 0;
+	}
+
+	/**
+	 * Mate scores are stored as the distance to mate from the position, not
+	 * from the root.
+	 */
+
+	private static int toTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY) {
+			return score + ply;
+		}
+		if (score <= -MATE + MAX_PLY) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY) {
+			return score - ply;
+		}
+		if (score <= -MATE + MAX_PLY) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	/**
+	 * The fifty-move rule only makes it a draw if the side to move is not
+	 * mated, which can only be when it is in check.
+	 */
+
+	private boolean isFiftyMoves(int side, int ply) {
+		if (!history.isFiftyMoves()) {
+			return false;
+		}
+		if (!isInCheck(side)) {
+			return true;
+		}
+		MovePicker picker = pickers[ply];
+		picker.reset(position, 0, played[ply - 1]);
+		return picker.next() != 0;
+	}
+
+	private boolean isInCheck(int side) {
+		long king = position.getBoard()[side][Commons.PieceType.KING];
+		return king != 0
+				&& Board.isAttacked(Long.numberOfTrailingZeros(king), side,
+						position);
+	}
+
+	public int getBestMove() {
+		return principalVariation.length == 0 ? 0 : principalVariation[0];
+	}
+
+	/**
+	 * @return the score of the last finished iteration, for the side to move
+	 */
+
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * @return the depth of the last finished iteration
+	 */
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return all nodes searched, the quiescence nodes included
+	 */
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return the nodes searched in the quiescence search
+	 */
+
+	public long getQuiescenceNodes() {
+		return quiescenceNodes;
+	}
+
+	/**
+	 * @return the part of the beta cutoffs that came from the first move
+	 *         searched in the last search
+	 */
+
+	public double getFirstMoveCutoffRate() {
+		return ordering.getFirstMoveCutoffRate();
+	}
+
+	public int[] getPrincipalVariation() {
+		return principalVariation.clone();
+	}
+
+	public String getPrincipalVariationString() {
+		StringBuilder str = new StringBuilder();
+		for (int move : principalVariation) {
+			if (str.length() > 0) {
+				str.append(' ');
+			}
+			str.append(Move.toAlgebraic(move));
+		}
+		return str.toString();
+	}
+
+}
@@ -0,0 +1,116 @@
+package search;
+
+import board.Board;
+import board.Move;
+import board.Position;
+import utils.Commons;
+
+/**
+ * Static exchange evaluation, what a capture wins or loses when both sides
+ * keep taking back on its square with their least valuable piece first, and
+ * either side can stop when taking on would lose more. Pieces behind the
+ * ones that moved away attack the square once they are gone, so a rook
+ * behind a rook counts too.
+ *
+ * Every search thread needs its own, it keeps the gains of each capture in
+ * an array.
+ */
+
+public class See {
+
+	// Indexed by Commons.PieceType, taking the king ends every exchange
+	private static final int[] VALUES = { 20000, 900, 500, 330, 320, 100 };
+
+	// The order the attackers are tried in, least valuable first
+	private static final int[] ORDER = { Commons.PieceType.PAWN,
+			Commons.PieceType.KNIGHT, Commons.PieceType.BISHOP,
+			Commons.PieceType.ROOK, Commons.PieceType.QUEEN,
+			Commons.PieceType.KING };
+
+	// The most there can be is one gain for every piece on the board
+	private final int[] gain = new int[32];
+
+	/**
+	 * Find what a move wins in the exchange on its square.
+	 *
+	 * @param move
+	 *            a capture or promotion of the side to move, other moves are
+	 *            scored as if they captured nothing
+	 * @return the material won in centipawns, negative when it loses
+	 */
+
+	public int evaluate(Position position, int move) {
+		long[][] board = position.getBoard();
+		int side = position.getSide();
+		int from = Move.fromSquare(move);
+		int to = Move.toSquare(move);
+		int captured = getCaptured(move, position);
+
+		gain[0] = captured == -1 ? 0 : VALUES[captured];
+		int moved = Move.pieceType(move);
+		if (Move.isPromotion(move)) {
+			gain[0] += VALUES[moved] - VALUES[Commons.PieceType.PAWN];
+		}
+
+		long occupied = position.getBitMap() & ~Board.masks[from];
+		if (captured == Commons.PieceType.PAWN
+				&& (position.getBitMap() & Board.masks[to]) == 0) {
+			// En passant, the pawn taken is beside the one taking it
+			occupied &= ~Board.masks[side == Commons.Color.WHITE ? to + 8
+					: to - 8];
+		}
+
+		int d = 0;
+		int color = side;
+		while (true) {
+			color = Board.oppositeSide(color);
+			long attackers = Board.getAttackersTo(board, to, occupied)
+					& occupied;
+			long own = 0;
+			int type = -1;
+			for (int i = 0; i < ORDER.length && own == 0; i++) {
+				type = ORDER[i];
+				own = attackers & board[color][type];
+			}
+			if (own == 0) {
+				break;
+			}
+
+			// The piece on the square is taken, and then ours may be
+			d++;
+			gain[d] = VALUES[moved] - gain[d - 1];
+			if (Math.max(-gain[d - 1], gain[d]) < 0 || d == gain.length - 1) {
+				break;
+			}
+			occupied &= ~(own & -own);
+			moved = type;
+		}
+
+		// Each side only takes when it is better than stopping
+		while (d > 0) {
+			gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+			d--;
+		}
+		return gain[0];
+	}
+
+	/**
+	 * @return the type of the piece captured by a move of the side to move,
+	 *         or -1
+	 */
+
+	static int getCaptured(int move, Position position) {
+		int opposite = Board.oppositeSide(position.getSide());
+		int to = Move.toSquare(move);
+		int captured = position.getPieceAtSquare(to, opposite);
+
+		// En passant, a pawn moving to another file without taking on the
+		// square it moves to
+		if (captured == -1 && Move.pieceType(move) == Commons.PieceType.PAWN
+				&& (Move.fromSquare(move) - to) % 8 != 0) {
+			return Commons.PieceType.PAWN;
+		}
+		return captured;
+	}
+
+}
@@ -0,0 +1,246 @@
+package search;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A transposition table kept outside the Java heap so it does not cost the
+ * garbage collector anything however big it is. The table is made of 64 byte
+ * buckets, one cache line, with four entries of two longs each:
+ *
+ * <pre>
+ * key ^ data
+ * data
+ * </pre>
+ *
+ * Many threads can store and probe at the same time without locks. A thread
+ * can see an entry where the two longs were written by different threads,
+ * but then key ^ data is not the key probed for and the entry is just a
+ * miss. That only holds if every long is read and written whole, so the
+ * buffer is only accessed through a VarHandle in opaque mode, which is
+ * atomic for aligned longs and seen by other threads.
+ *
+ * The data long holds the move, score, depth, bound and the age of the
+ * search that stored it, see the get methods for the layout. When a bucket is
+ * full the entry with the lowest depth is replaced, where entries from older
+ * searches count as lower.
+ */
+
+public class TranspositionTable {
+
+	public static final int BOUND_EXACT = 1;
+	public static final int BOUND_LOWER = 2;
+	public static final int BOUND_UPPER = 3;
+
+	public static final int MAX_MEGABYTES = 1024;
+
+	private static final int BUCKET_SIZE = 64;
+	private static final int ENTRY_SIZE = 16;
+	private static final int ENTRIES = BUCKET_SIZE / ENTRY_SIZE;
+
+	private static final int MOVE_BITS = 17;
+	private static final int SCORE_SHIFT = 17;
+	private static final int DEPTH_SHIFT = 33;
+	private static final int BOUND_SHIFT = 41;
+	private static final int AGE_SHIFT = 43;
+
+	// How much depth one search of age is worth when replacing
+	private static final int AGE_WEIGHT = 8;
+
+	private static final VarHandle LONGS = MethodHandles
+			.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private final ByteBuffer table;
+	private final long bucketMask;
+
+	private volatile int age;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder collisions = new LongAdder();
+
+	/**
+	 * Create a table.
+	 *
+	 * @param megabytes
+	 *            the size of the table, rounded down to a power of two
+	 */
+
+	public TranspositionTable(int megabytes) {
+		if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+			throw new IllegalArgumentException("Size must be 1 to "
+					+ MAX_MEGABYTES + " MB: " + megabytes);
+		}
+
+		int size = Integer.highestOneBit(megabytes) << 20;
+
+		// Start the buckets on cache lines
+		table = ByteBuffer.allocateDirect(size + BUCKET_SIZE)
+				.alignedSlice(BUCKET_SIZE).order(ByteOrder.nativeOrder());
+		bucketMask = size / BUCKET_SIZE - 1;
+	}
+
+	/**
+	 * Look up a position.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @return the data stored for the position or 0 if there is none
+	 */
+
+	public long probe(long key) {
+		int bucket = getBucket(key);
+
+		for (int i = 0; i < ENTRIES; i++) {
+			int offset = bucket + i * ENTRY_SIZE;
+			long data = getLong(offset + 8);
+
+			if ((getLong(offset) ^ data) == key && getBound(data) != 0) {
+				hits.increment();
+				return data;
+			}
+		}
+
+		misses.increment();
+		return 0;
+	}
+
+	/**
+	 * Store a position.
+	 *
+	 * @param key
+	 *            the Zobrist key of the position
+	 * @param move
+	 *            the best move, or 0 to keep the move already stored
+	 * @param score
+	 *            the score, it has to fit in a short
+	 * @param depth
+	 *            the depth searched, 0 to 255
+	 * @param bound
+	 *            BOUND_EXACT, BOUND_LOWER or BOUND_UPPER
+	 */
+
+	public void store(long key, int move, int score, int depth, int bound) {
+		int bucket = getBucket(key);
+		int replace = bucket;
+		int lowest = Integer.MAX_VALUE;
+		long old = 0;
+
+		for (int i = 0; i < ENTRIES; i++) {
+			int offset = bucket + i * ENTRY_SIZE;
+			long data = getLong(offset + 8);
+
+			if (getBound(data) == 0 || (getLong(offset) ^ data) == key) {
+				replace = offset;
+				old = data;
+				lowest = Integer.MIN_VALUE;
+				break;
+			}
+
+			int value = getDepth(data) - AGE_WEIGHT
+					* ((age - getAge(data)) & 0xFF);
+			if (value < lowest) {
+				lowest = value;
+				replace = offset;
+			}
+		}
+
+		if (lowest != Integer.MIN_VALUE) {
+			collisions.increment();
+		} else if (move == 0) {
+			move = getMove(old);
+		}
+
+		long data = (move & ((1L << MOVE_BITS) - 1))
+				| (score & 0xFFFFL) << SCORE_SHIFT
+				| (long) (depth & 0xFF) << DEPTH_SHIFT
+				| (long) (bound & 0x3) << BOUND_SHIFT
+				| (long) (age & 0xFF) << AGE_SHIFT;
+
+		putLong(replace + 8, data);
+		putLong(replace, key ^ data);
+	}
+
+	/**
+	 * Start a new search, entries from earlier searches are replaced first.
+	 */
+
+	public void newSearch() {
+		age = (age + 1) & 0xFF;
+	}
+
+	/**
+	 * Empty the table and reset the counters.
+	 */
+
+	public void clear() {
+		for (int i = 0; i < table.capacity(); i += 8) {
+			putLong(i, 0);
+		}
+		age = 0;
+		hits.reset();
+		misses.reset();
+		collisions.reset();
+	}
+
+	public static int getMove(long data) {
+		return (int) (data & ((1L << MOVE_BITS) - 1));
+	}
+
+	public static int getScore(long data) {
+		return (short) (data >>> SCORE_SHIFT);
+	}
+
+	public static int getDepth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int getBound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+
+	private static int getAge(long data) {
+		return (int) (data >>> AGE_SHIFT) & 0xFF;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return how many times an entry for another position was replaced
+	 */
+
+	public long getCollisions() {
+		return collisions.sum();
+	}
+
+	/**
+	 * @return the size of the table in bytes
+	 */
+
+	public long size() {
+		return (bucketMask + 1) * BUCKET_SIZE;
+	}
+
+	private long getLong(int offset) {
+		return (long) LONGS.getOpaque(table, offset);
+	}
+
+	private void putLong(int offset, long value) {
+		LONGS.setOpaque(table, offset, value);
+	}
+
+	private int getBucket(long key) {
+		// The low bits of the key pick the bucket
+		return (int) (key & bucketMask) * BUCKET_SIZE;
+	}
+
+}
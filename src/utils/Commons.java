@@ -322,7 +322,7 @@ public class Commons {
 				0x10101011925438EFL,
 				0x2020212224A870DFL, // 5
 				0x404142444850E0BFL,
-				0x8182848890A0C0FFL,
+				0x8182848890A0C07FL,
 				0x412111090503FE03L,
 				0x824222120A07FD07L,
 				0x4844424150EFB0EL, // 10
@@ -458,7 +458,7 @@ public class Commons {
 				0x0000000182442800L, 
 				0x0000010204885000L, // 5
 				0x000102040810A000L,
-				0x0102040810204080L,
+				0x0102040810204000L,
 				0x4020100804020002L,
 				0x8040201008050005L,
 				0x00804020110A000AL, // 10
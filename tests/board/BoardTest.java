@@ -993,6 +993,99 @@ public class BoardTest {
 
 	}
 
+	@Test
+	public void testGetValidMovesForColorIntoMoveList() {
+		MoveList moves = new MoveList();
+
+		assertEquals(20,
+				Board.getValidMovesForColor(Commons.Color.WHITE, board, moves));
+		assertEquals(20, moves.size());
+
+		// Moves are appended to what is already in the list
+		assertEquals(20,
+				Board.getValidMovesForColor(Commons.Color.BLACK, board, moves));
+		assertEquals(40, moves.size());
+
+		moves.clear();
+		assertTrue(moves.isEmpty());
+
+		// Should be the same moves as the list version
+		Board.getValidMovesForColor(Commons.Color.WHITE, board, moves);
+		List<Move> list = Board.getValidMovesForColor(Commons.Color.WHITE,
+				board);
+		assertEquals(list.size(), moves.size());
+		for (int i = 0; i < moves.size(); i++) {
+			assertTrue(list.contains(Move.decode(moves.get(i))));
+		}
+
+		// Check for consistency
+		assertArrayEquals(board, Board.initBitBoard());
+
+	}
+
+	@Test
+	public void testEncodeMove() {
+		Move move = new Move(60, 62, Commons.PieceType.KING, new Move(63, 61,
+				Commons.PieceType.ROOK));
+		int encoded = move.encode();
+
+		assertEquals(60, Move.fromSquare(encoded));
+		assertEquals(62, Move.toSquare(encoded));
+		assertEquals(Commons.PieceType.KING, Move.pieceType(encoded));
+		assertTrue(Move.isCastle(encoded));
+		assertFalse(Move.isPromotion(encoded));
+
+		Move decoded = Move.decode(encoded);
+		assertEquals(move, decoded);
+		assertEquals(move.getExtraMove(), decoded.getExtraMove());
+
+	}
+
+	@Test
+	public void testMakeAndUnmakeMove() {
+		UndoStack undo = new UndoStack();
+		MoveList moves = new MoveList();
+
+		// Promotion with capture, en passant and castling for white
+		board = Board.initBitBoard();
+		board = Board.removePieceAtSquare(board, 61);
+		board = Board.removePieceAtSquare(board, 62);
+		board = Board.removePieceAtSquare(board, 9);
+		board = Board.setPieceAtSquare(board, 9, Commons.PieceType.PAWN,
+				Commons.Color.WHITE);
+		board = Board.setPieceAtSquare(board, 27, Commons.PieceType.PAWN,
+				Commons.Color.WHITE);
+		board = Board.move(new Move(12, 28, Commons.PieceType.PAWN),
+				Commons.Color.BLACK, board);
+
+		long[][] copy = Board.deepCopy2DArray(board);
+		Board.getValidMovesForColor(Commons.Color.WHITE, board, moves);
+
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			Board.makeMove(move, Commons.Color.WHITE, board, undo);
+
+			// Should be the same as moving on a copy
+			assertArrayEquals(
+					Board.move(move, Commons.Color.WHITE,
+							Board.deepCopy2DArray(copy)), board);
+
+			Board.unmakeMove(move, Commons.Color.WHITE, board, undo);
+			assertArrayEquals(copy, board);
+		}
+
+		assertEquals(0, undo.size());
+
+		// En passant capture puts the pawn back
+		int move = Move.encode(27, 20, Commons.PieceType.PAWN);
+		Board.makeMove(move, Commons.Color.WHITE, board, undo);
+		assertEquals(Commons.PieceType.PAWN, undo.getCapturedType());
+		assertFalse(Board.isSquareOccupied(28, board));
+		Board.unmakeMove(move, Commons.Color.WHITE, board, undo);
+		assertArrayEquals(copy, board);
+
+	}
+
 	@Test
 	public void perftTest() {
 		assertEquals(1, perft(0, Commons.Color.WHITE));
@@ -1040,6 +1133,194 @@ public class BoardTest {
 
 	}
 
+	@Test
+	public void testGetAttackersTo() {
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			Fen.parse(entry.fen, board);
+			long occupied = Board.getBitMap(board);
+
+			for (int square = 0; square < 64; square++) {
+				// Every piece that has the square among its attacks
+				long expected = 0;
+				for (int color = 0; color < 2; color++) {
+					for (int type = 0; type < 6; type++) {
+						for (long b = board[color][type]; b != 0; b &= (b - 1)) {
+							int from = Long.numberOfTrailingZeros(b);
+							long attacks = type == Commons.PieceType.PAWN ? Commons.Bitmaps.PAWN_ATTACKS[color][from]
+									: Board.getPieceAttacks(type, from, occupied);
+							if ((attacks & Board.masks[square]) != 0) {
+								expected |= Board.masks[from];
+							}
+						}
+					}
+				}
+
+				long attackers = Board.getAttackersTo(board, square, occupied);
+				assertEquals(entry.name + " " + square, expected, attackers);
+				assertEquals(attackers,
+						Board.getAttackersTo(board, square, occupied,
+								Commons.Color.BLACK)
+								| Board.getAttackersTo(board, square,
+										occupied, Commons.Color.WHITE));
+				assertEquals(
+						(attackers & Board.getBitMapForColor(board,
+								Commons.Color.BLACK)) != 0,
+						Board.isAttacked(square, Commons.Color.WHITE, board));
+			}
+		}
+	}
+
+	@Test
+	public void testFlatBoardSameAsBoard() {
+		long[] flat = new long[Board.FLAT_LENGTH];
+		assertArrayEquals(Board.flatten(Board.initBitBoard(), flat),
+				Board.initFlatBoard());
+
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			Board.flatten(board, flat);
+			assertArrayEquals(board[Commons.Color.WHITE],
+					Board.unflatten(flat, new long[2][7])[Commons.Color.WHITE]);
+
+			long occupied = Board.getBitMap(board);
+			assertEquals(occupied, Board.getBitMap(flat));
+			for (int i = 0; i < 6; i++) {
+				assertEquals(Board.getBitMapForType(board, i),
+						Board.getBitMapForType(flat, i));
+			}
+			for (int color = 0; color < 2; color++) {
+				assertEquals(Board.getBitMapForColor(board, color),
+						Board.getBitMapForColor(flat, color));
+				assertEquals(Board.getKingIndex(color, board),
+						Board.getKingIndex(color, flat));
+			}
+
+			for (int square = 0; square < 64; square++) {
+				assertEquals(Board.getAttackersTo(board, square, occupied),
+						Board.getAttackersTo(flat, square, occupied));
+				assertEquals(Board.isSquareOccupied(square, board),
+						Board.isSquareOccupied(square, flat));
+				for (int color = 0; color < 2; color++) {
+					long enemy = Board.getBitMapForColor(board,
+							Board.oppositeSide(color));
+					assertEquals(Board.getPieceAtSquare(board, square, color),
+							Board.getPieceAtSquare(flat, square, color));
+					assertEquals(
+							Board.getAttackersTo(board, square, occupied, color),
+							Board.getAttackersTo(flat, square, occupied, color));
+					assertEquals(Board.isAttacked(square, color, board),
+							Board.isAttacked(square, color, flat));
+					assertEquals(
+							Board.isAttacked(square, color, board, occupied),
+							Board.isAttacked(square, color, flat, occupied));
+					assertEquals(Board.isAttackedByPawn(square, color, board),
+							Board.isAttackedByPawn(square, color, flat));
+					assertEquals(Board.isAttackedByKnight(square, color, board),
+							Board.isAttackedByKnight(square, color, flat));
+					assertEquals(Board.isAttackedByKing(square, color, board),
+							Board.isAttackedByKing(square, color, flat));
+					assertEquals(Board.isAttackedByRook(square, color, board),
+							Board.isAttackedByRook(square, color, flat));
+					assertEquals(Board.isAttackedByBishop(square, color, board),
+							Board.isAttackedByBishop(square, color, flat));
+					assertEquals(Board.isAttackedByQueen(square, color, board),
+							Board.isAttackedByQueen(square, color, flat));
+					assertEquals(
+							Board.isAttackedByRook(square, color, board, 0),
+							Board.isAttackedByRook(square, color, flat, 0));
+					assertEquals(
+							Board.isAttackedByBishop(square, color, board, 0),
+							Board.isAttackedByBishop(square, color, flat, 0));
+					assertEquals(
+							Board.isAttackedByQueen(square, color, board, 0),
+							Board.isAttackedByQueen(square, color, flat, 0));
+					assertEquals(Board.getPawnMovesFrom(square, color, board),
+							Board.getPawnMovesFrom(square, color, flat));
+					assertEquals(
+							Board.getPawnAttacksFrom(square, color, board),
+							Board.getPawnAttacksFrom(square, color, flat));
+					assertEquals(Board.getPawnAttacksFrom(square, color,
+							board, enemy), Board.getPawnAttacksFrom(square,
+							color, flat, enemy));
+					assertEquals(
+							Board.getPawnAttacksAndMoves(square, color, board),
+							Board.getPawnAttacksAndMoves(square, color, flat));
+				}
+
+				assertEquals(Board.getValidMovesForSquare(square, side, board),
+						Board.getValidMovesForSquare(square, side, flat));
+				MoveList expected = new MoveList();
+				MoveList actual = new MoveList();
+				assertEquals(Board.getValidMovesForSquare(square, side, board,
+						expected), Board.getValidMovesForSquare(square, side,
+						flat, actual));
+				assertEquals(expected.toList(0), actual.toList(0));
+			}
+
+			// Setting and removing pieces
+			long[][] changed = Board.deepCopy2DArray(board);
+			long[] changedFlat = Board.copyBoard(flat,
+					new long[Board.FLAT_LENGTH]);
+			Board.setPieceAtSquare(changed, 27, Commons.PieceType.QUEEN,
+					Commons.Color.WHITE);
+			Board.setPieceAtSquare(changedFlat, 27, Commons.PieceType.QUEEN,
+					Commons.Color.WHITE);
+			Board.removePieceAtSquare(changed, 60);
+			Board.removePieceAtSquare(changedFlat, 60);
+			Board.removePieceAtSquare(changed, 4, Commons.PieceType.KING,
+					Commons.Color.BLACK);
+			Board.removePieceAtSquare(changedFlat, 4, Commons.PieceType.KING,
+					Commons.Color.BLACK);
+			assertArrayEquals(Board.flatten(changed,
+					new long[Board.FLAT_LENGTH]), changedFlat);
+
+			// The moves as Move objects
+			List<Move> moves = Board.getValidMovesForColor(side, board);
+			assertEquals(moves, Board.getValidMovesForColor(side, flat));
+			for (Move move : moves) {
+				long[][] after = Board.move(move, side,
+						Board.deepCopy2DArray(board));
+				long[] afterFlat = Board.move(move, side,
+						Board.copyBoard(flat, new long[Board.FLAT_LENGTH]));
+				assertArrayEquals(Board.flatten(after,
+						new long[Board.FLAT_LENGTH]), afterFlat);
+			}
+
+			assertEquals(entry.name, entry.counts[2],
+					flatPerft(flat, side, 3, new UndoStack()));
+			// Every move was taken back
+			assertArrayEquals(Board.flatten(board, new long[Board.FLAT_LENGTH]),
+					flat);
+		}
+	}
+
+	/**
+	 * Counts the leaves with the flat board, checking every move gives the
+	 * same board as with long[][].
+	 */
+
+	private long flatPerft(long[] flat, int side, int depth, UndoStack undo) {
+		if (depth == 0) {
+			return 1;
+		}
+
+		long nodes = 0;
+		MoveList moves = new MoveList();
+		Board.getValidMovesForColor(side, flat, moves);
+		long[][] expected = Board.unflatten(flat, new long[2][7]);
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			Board.makeMove(move, side, flat, undo);
+			long[][] after = Board.move(move, side,
+					Board.deepCopy2DArray(expected));
+			assertArrayEquals(Board.flatten(after, new long[Board.FLAT_LENGTH]),
+					flat);
+			nodes += flatPerft(flat, Board.oppositeSide(side), depth - 1, undo);
+			Board.unmakeMove(move, side, flat, undo);
+		}
+		return nodes;
+	}
+
 	public long perft(int depth, int side) {
 		long nodes = 0;
 
@@ -0,0 +1,74 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EpdBatchTest {
+
+	@Test
+	public void testResultsInOrder() throws IOException {
+		Path input = Files.createTempFile("positions", ".epd");
+		Path output = Files.createTempFile("results", ".txt");
+		List<String> lines = new ArrayList<String>();
+		List<String> expected = new ArrayList<String>();
+
+		for (int i = 0; i < 200; i++) {
+			Perft.Entry entry = Perft.POSITIONS[i % Perft.POSITIONS.length];
+			lines.add(i % 7 == 0 ? entry.fen + " bm e4; id \"" + i + "\";"
+					: entry.fen);
+			expected.add(entry.counts[0] + " " + (i % 6 == 3 ? 1 : 0));
+
+			if (i % 50 == 0) {
+				lines.add("not a position");
+				expected.add("error");
+				lines.add("");
+			}
+		}
+
+		try {
+			Files.write(input, lines, StandardCharsets.US_ASCII);
+
+			// Small chunks so lines are split between many of them
+			assertEquals(200, EpdBatch.run(input, output, 3, 1000,
+					new PrintStream(new ByteArrayOutputStream())));
+
+			List<String> results = Files.readAllLines(output,
+					StandardCharsets.US_ASCII);
+			assertEquals(expected.size(), results.size());
+			for (int i = 0; i < results.size(); i++) {
+				assertTrue(results.get(i), results.get(i).startsWith(
+						expected.get(i)));
+			}
+		} finally {
+			Files.delete(input);
+			Files.delete(output);
+		}
+	}
+
+	@Test
+	public void testNoThreads() throws IOException {
+		Path input = Files.createTempFile("positions", ".epd");
+		Path output = Files.createTempFile("results", ".txt");
+		try {
+			EpdBatch.run(input, output, 0,
+					new PrintStream(new ByteArrayOutputStream()));
+			fail("A batch needs a thread");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		} finally {
+			Files.delete(input);
+			Files.delete(output);
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import utils.Commons;
+
+public class FenTest {
+
+	@Test
+	public void testStartPosition() {
+		long[][] board = new long[2][7];
+
+		assertEquals(Commons.Color.WHITE, Fen.parse(Fen.START_POSITION, board));
+		assertArrayEquals(Board.initBitBoard(), board);
+		assertEquals(Fen.START_POSITION, Fen.write(board, Commons.Color.WHITE,
+				new StringBuilder()).toString());
+	}
+
+	@Test
+	public void testWriteWhatWasRead() {
+		long[][] board = new long[2][7];
+		StringBuilder out = new StringBuilder();
+
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			String[] fields = entry.fen.split(" ");
+
+			out.setLength(0);
+			Fen.write(board, side, Integer.parseInt(fields[4]),
+					Integer.parseInt(fields[5]), out);
+			assertEquals(entry.fen, out.toString());
+		}
+	}
+
+	@Test
+	public void testEnPassant() {
+		String fen = "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3";
+		long[][] board = new long[2][7];
+
+		assertEquals(Commons.Color.BLACK, Fen.parse(fen, board));
+		assertEquals(Board.masks[44], board[Commons.Color.WHITE][6]
+				& ~Board.initBitBoard()[Commons.Color.WHITE][6]);
+		assertEquals(fen, Fen.write(board, Commons.Color.BLACK, 0, 3,
+				new StringBuilder()).toString());
+	}
+
+	@Test
+	public void testParseFromText() {
+		// An EPD line, the FEN is followed by operations
+		String line = "  r3k2r/8/8/8/8/8/8/R3K2R b Kq - bm O-O; id \"x\";\n";
+		byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+		long[][] fromChars = new long[2][7];
+		long[][] fromBytes = new long[2][7];
+
+		assertEquals(Commons.Color.BLACK, Fen.parse(line, 0, line.length(),
+				fromChars));
+		assertEquals(Commons.Color.BLACK, Fen.parse(ByteBuffer.wrap(bytes), 0,
+				bytes.length, fromBytes));
+		assertArrayEquals(fromChars, fromBytes);
+		assertEquals("r3k2r/8/8/8/8/8/8/R3K2R b Kq - 0 1", Fen.write(
+				fromChars, Commons.Color.BLACK, new StringBuilder()).toString());
+
+		Position position = new Position();
+		Fen.parse(line, position);
+		assertEquals(Commons.Color.BLACK, position.getSide());
+		assertEquals(Zobrist.getKey(fromChars, Commons.Color.BLACK),
+				position.getKey());
+	}
+
+	@Test
+	public void testNotAFen() {
+		String[] fens = { "", "rnbqkbnr/8/8/8/8/8/8/8", "x7/8/8/8/8/8/8/8 w",
+				"8/8/8/8/8/8/8/8 x", "8/8/8/8/8/8/8/8 w - z9" };
+		for (String fen : fens) {
+			try {
+				Fen.parse(fen, new long[2][7]);
+				fail(fen);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testNoGarbage() {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long[][] board = new long[2][7];
+		StringBuilder out = new StringBuilder(128);
+		String fen = Perft.POSITIONS[1].fen;
+
+		for (int i = 0; i < 20000; i++) {
+			out.setLength(0);
+			Fen.write(board, Fen.parse(fen, board), out);
+		}
+
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < 20000; i++) {
+			out.setLength(0);
+			Fen.write(board, Fen.parse(fen, board), out);
+		}
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+		// Allow for the calls to getThreadAllocatedBytes
+		assertTrue("Allocated " + allocated, allocated < 1024);
+	}
+
+}
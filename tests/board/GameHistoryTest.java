@@ -0,0 +1,113 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class GameHistoryTest {
+
+	private static final int KNIGHT = Move.encode(62, 45,
+			Commons.PieceType.KNIGHT);
+	private static final int PAWN = Move.encode(52, 36, Commons.PieceType.PAWN);
+
+	@Test
+	public void testRepetition() {
+		GameHistory history = new GameHistory();
+		history.reset(1, 0);
+
+		// Knights out and back again
+		history.push(KNIGHT, false, 2);
+		history.push(KNIGHT, false, 3);
+		history.push(KNIGHT, false, 4);
+		assertFalse(history.isRepetition());
+		history.push(KNIGHT, false, 1);
+		assertTrue(history.isRepetition());
+		assertEquals(1, history.getRepetitions());
+		assertFalse(history.isThreefoldRepetition());
+
+		history.push(KNIGHT, false, 2);
+		history.push(KNIGHT, false, 3);
+		history.push(KNIGHT, false, 4);
+		history.push(KNIGHT, false, 1);
+		assertEquals(2, history.getRepetitions());
+		assertTrue(history.isThreefoldRepetition());
+
+		history.pop();
+		assertEquals(4, history.getKey());
+		assertEquals(1, history.getRepetitions());
+	}
+
+	@Test
+	public void testIrreversibleMoves() {
+		GameHistory history = new GameHistory();
+		history.reset(1, 7);
+		assertEquals(7, history.getHalfmoveClock());
+
+		history.push(KNIGHT, false, 2);
+		assertEquals(8, history.getHalfmoveClock());
+		history.push(PAWN, false, 3);
+		assertEquals(0, history.getHalfmoveClock());
+		history.push(KNIGHT, true, 4);
+		assertEquals(0, history.getHalfmoveClock());
+		history.push(Move.encode(12, 4, Commons.PieceType.QUEEN,
+				Move.FLAG_PROMOTION), false, 5);
+		assertEquals(0, history.getHalfmoveClock());
+
+		// The same key before the pawn move does not count
+		history.push(KNIGHT, false, 6);
+		history.push(KNIGHT, false, 7);
+		history.push(KNIGHT, false, 1);
+		assertFalse(history.isRepetition());
+		history.pop();
+		history.pop();
+		history.pop();
+		assertEquals(0, history.getHalfmoveClock());
+	}
+
+	@Test
+	public void testFiftyMoves() {
+		GameHistory history = new GameHistory();
+		history.reset(0, GameHistory.FIFTY_MOVES - 2);
+		history.push(KNIGHT, false, 1);
+		assertFalse(history.isFiftyMoves());
+		history.push(KNIGHT, false, 2);
+		assertTrue(history.isFiftyMoves());
+		history.pop();
+		assertFalse(history.isFiftyMoves());
+	}
+
+	@Test
+	public void testRingBuffer() {
+		GameHistory history = new GameHistory(6);
+		history.reset(0, 0);
+
+		// Only the last 8 positions are kept, a repetition further back is
+		// not found
+		for (int i = 1; i <= 20; i++) {
+			history.push(KNIGHT, false, i % 10);
+		}
+		assertEquals(21, history.size());
+		assertEquals(0, history.getKey());
+		assertFalse(history.isRepetition());
+
+		for (int i = 1; i <= 5; i++) {
+			history.push(KNIGHT, false, 100 + i % 2);
+		}
+		assertTrue(history.isRepetition());
+
+		GameHistory copy = new GameHistory(history);
+		copy.pop();
+		assertTrue(history.isRepetition());
+		assertEquals(history.size() - 1, copy.size());
+
+		try {
+			new GameHistory(0);
+			fail("No room for a position");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+}
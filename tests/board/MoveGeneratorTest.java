@@ -0,0 +1,178 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import utils.Commons;
+
+public class MoveGeneratorTest {
+
+	private long[][] board;
+	private MoveList moves;
+
+	@Before
+	public void setUp() {
+		board = new long[2][7];
+		moves = new MoveList();
+	}
+
+	@Test
+	public void testPinnedPieces() {
+		Board.setPieceAtSquare(board, 60, Commons.PieceType.KING,
+				Commons.Color.WHITE);
+		Board.setPieceAtSquare(board, 4, Commons.PieceType.KING,
+				Commons.Color.BLACK);
+
+		// Knight pinned on the e file can not move at all
+		Board.setPieceAtSquare(board, 52, Commons.PieceType.KNIGHT,
+				Commons.Color.WHITE);
+		Board.setPieceAtSquare(board, 28, Commons.PieceType.ROOK,
+				Commons.Color.BLACK);
+
+		assertEquals(0, Board.getValidMovesForSquare(52, Commons.Color.WHITE,
+				board, moves));
+
+		// Rook pinned on the e file can move on it and capture the pinner
+		Board.removePieceAtSquare(board, 52);
+		Board.setPieceAtSquare(board, 52, Commons.PieceType.ROOK,
+				Commons.Color.WHITE);
+
+		assertEquals(3, Board.getValidMovesForSquare(52, Commons.Color.WHITE,
+				board, moves));
+		for (int i = 0; i < moves.size(); i++) {
+			assertEquals(Commons.File.E, Move.toSquare(moves.get(i)) % 8);
+		}
+
+	}
+
+	@Test
+	public void testEnPassant() {
+		Board.setPieceAtSquare(board, 24, Commons.PieceType.KING,
+				Commons.Color.WHITE);
+		Board.setPieceAtSquare(board, 7, Commons.PieceType.KING,
+				Commons.Color.BLACK);
+		Board.setPieceAtSquare(board, 25, Commons.PieceType.PAWN,
+				Commons.Color.WHITE);
+		Board.setPieceAtSquare(board, 10, Commons.PieceType.PAWN,
+				Commons.Color.BLACK);
+		Board.move(Move.encode(10, 26, Commons.PieceType.PAWN),
+				Commons.Color.BLACK, board);
+
+		Board.getValidMovesForSquare(25, Commons.Color.WHITE, board, moves);
+		assertTrue(contains(moves, Move.encode(25, 18, Commons.PieceType.PAWN)));
+
+		// Both pawns leave the rank so the rook would check the king
+		Board.setPieceAtSquare(board, 31, Commons.PieceType.ROOK,
+				Commons.Color.BLACK);
+		moves.clear();
+
+		Board.getValidMovesForSquare(25, Commons.Color.WHITE, board, moves);
+		assertFalse(contains(moves, Move.encode(25, 18, Commons.PieceType.PAWN)));
+
+	}
+
+	@Test
+	public void testCastling() {
+		board = Board.initBitBoard();
+		UndoStack undo = new UndoStack();
+
+		Board.removePieceAtSquare(board, 57);
+		Board.removePieceAtSquare(board, 58);
+		Board.removePieceAtSquare(board, 59);
+		Board.removePieceAtSquare(board, 61);
+		Board.removePieceAtSquare(board, 62);
+
+		Board.getValidMovesForSquare(60, Commons.Color.WHITE, board, moves);
+
+		int queenside = Move.encode(60, 58, Commons.PieceType.KING,
+				Move.FLAG_CASTLE);
+		int kingside = Move.encode(60, 62, Commons.PieceType.KING,
+				Move.FLAG_CASTLE);
+		assertTrue(contains(moves, queenside));
+		assertTrue(contains(moves, kingside));
+
+		Board.makeMove(queenside, Commons.Color.WHITE, board, undo);
+		assertEquals(Commons.PieceType.KING,
+				Board.getPieceAtSquare(board, 58, Commons.Color.WHITE));
+		assertEquals(Commons.PieceType.ROOK,
+				Board.getPieceAtSquare(board, 59, Commons.Color.WHITE));
+		Board.unmakeMove(queenside, Commons.Color.WHITE, board, undo);
+
+		// Can not castle through an attacked square
+		Board.removePieceAtSquare(board, 53);
+		Board.setPieceAtSquare(board, 29, Commons.PieceType.ROOK,
+				Commons.Color.BLACK);
+		moves.clear();
+
+		Board.getValidMovesForSquare(60, Commons.Color.WHITE, board, moves);
+		assertTrue(contains(moves, queenside));
+		assertFalse(contains(moves, kingside));
+
+		// Can not castle with a rook that was captured
+		Board.move(Move.encode(29, 61, Commons.PieceType.ROOK),
+				Commons.Color.BLACK, board);
+		Board.move(Move.encode(61, 63, Commons.PieceType.ROOK),
+				Commons.Color.BLACK, board);
+		Board.removePieceAtSquare(board, 63);
+		Board.setPieceAtSquare(board, 63, Commons.PieceType.ROOK,
+				Commons.Color.WHITE);
+		moves.clear();
+
+		Board.getValidMovesForSquare(60, Commons.Color.WHITE, board, moves);
+		assertFalse(contains(moves, kingside));
+
+	}
+
+	@Test
+	public void testCapturesAndQuietsMakeAllMoves() {
+		MoveList captures = new MoveList();
+		MoveList quiets = new MoveList();
+		UndoStack undo = new UndoStack();
+
+		// Walk a few plies so checks, pins, en passant and promotions show up
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			Position position = new Position(board, side);
+			moves.clear();
+			Board.getValidMovesForColor(side, position, moves);
+
+			for (int i = 0; i < moves.size(); i++) {
+				int move = moves.get(i);
+				position.makeMove(move, side, undo);
+				int next = Board.oppositeSide(side);
+
+				MoveList all = new MoveList();
+				captures.clear();
+				quiets.clear();
+				Board.getValidMovesForColor(next, position, all);
+				Board.getCapturesForColor(next, position, captures);
+				Board.getQuietMovesForColor(next, position, quiets);
+
+				assertEquals(all.size(), captures.size() + quiets.size());
+				for (int j = 0; j < all.size(); j++) {
+					int m = all.get(j);
+					boolean capture = Move.isPromotion(m)
+							|| Board.getPieceAtSquare(board, Move.toSquare(m),
+									side) != -1
+							|| (Move.pieceType(m) == Commons.PieceType.PAWN && (Move
+									.fromSquare(m) - Move.toSquare(m)) % 8 != 0);
+					assertEquals(capture, contains(captures, m));
+					assertEquals(!capture, contains(quiets, m));
+				}
+				position.unmakeMove(move, side, undo);
+			}
+		}
+	}
+
+	private static boolean contains(MoveList moves, int move) {
+		for (int i = 0; i < moves.size(); i++) {
+			if (moves.get(i) == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
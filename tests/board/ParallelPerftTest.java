@@ -0,0 +1,74 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class ParallelPerftTest {
+
+	@Test
+	public void testSameCountsAsPerft() {
+		ParallelPerft perft = new ParallelPerft(4);
+		long[][] board = new long[2][7];
+
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			long[][] copy = Board.deepCopy2DArray(board);
+
+			assertEquals(entry.name, entry.counts[4], perft.perft(board, side,
+					5));
+			assertArrayEquals(copy, board);
+		}
+		perft.shutdown();
+	}
+
+	@Test
+	public void testWithCache() {
+		ParallelPerft perft = new ParallelPerft(4, new PerftCache(16));
+		long[][] board = new long[2][7];
+
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			assertEquals(entry.name, entry.counts[4], perft.perft(board, side,
+					5));
+		}
+		perft.shutdown();
+
+		// The cache works on one thread as well
+		int side = Fen.parse(Perft.POSITIONS[1].fen, board);
+		assertEquals(Perft.POSITIONS[1].counts[3], new Perft(4, new PerftCache(
+				1)).count(new Position(board, side), side, 4));
+	}
+
+	@Test
+	public void testScaling() {
+		assertTrue(ParallelPerft.runScaling(Board.initBitBoard(),
+				Commons.Color.WHITE, 4, 3,
+				0, new PrintStream(new ByteArrayOutputStream())));
+	}
+
+	@Test
+	public void testNoThreads() {
+		try {
+			new ParallelPerft(0);
+			fail("A count needs a thread");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		try {
+			ParallelPerft.runScaling(Board.initBitBoard(),
+					Commons.Color.WHITE, 1, 0, 0, new PrintStream(
+							new ByteArrayOutputStream()));
+			fail("A count needs a thread");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class PerftTest {
+
+	@Test
+	public void testStandardPositions() {
+		long[][] board = new long[2][7];
+
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			long[][] copy = Board.deepCopy2DArray(board);
+
+			for (int depth = 1; depth <= 4; depth++) {
+				assertEquals(entry.name + " depth " + depth,
+						entry.counts[depth - 1],
+						Perft.perft(board, side, depth));
+			}
+
+			// Making and unmaking all the moves should not change the board
+			assertArrayEquals(copy, board);
+		}
+
+	}
+
+	@Test
+	public void testDivide() {
+		long[][] board = Board.initBitBoard();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(8902, Perft.divide(board, Commons.Color.WHITE, 3,
+				new PrintStream(out)));
+		assertTrue(out.toString().contains("e2e4: 600"));
+		assertTrue(out.toString().contains("g1f3: 440"));
+
+	}
+
+	@Test
+	public void testSuite() {
+		assertTrue(Perft.runSuite(3, new PrintStream(new ByteArrayOutputStream())));
+	}
+
+}
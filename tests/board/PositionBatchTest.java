@@ -0,0 +1,159 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class PositionBatchTest {
+
+	// Not a multiple of any vector length, so the scalar tail runs too
+	private static final int SIZE = 203;
+
+	@Test
+	public void testAddAndGet() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(Perft.POSITIONS[1].fen, board);
+		PositionBatch batch = new PositionBatch(2);
+
+		assertEquals(0, batch.add(new long[2][7], Commons.Color.WHITE));
+		assertEquals(1, batch.add(board, side));
+		assertEquals(2, batch.size());
+
+		long[][] copy = new long[2][7];
+		assertEquals(side, batch.get(1, copy));
+		for (int color = 0; color < 2; color++) {
+			assertArrayEquals(board[color], copy[color]);
+		}
+		assertEquals(board[Commons.Color.WHITE][Commons.PieceType.PAWN],
+				batch.getColumn(Commons.Color.WHITE, Commons.PieceType.PAWN)[1]);
+
+		try {
+			batch.add(board, side);
+			fail("The batch is full");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		batch.clear();
+		assertEquals(0, batch.size());
+	}
+
+	@Test
+	public void testScalarSameAsBoard() {
+		checkQueries(false);
+	}
+
+	@Test
+	public void testVectorsSameAsBoard() {
+		checkQueries(true);
+	}
+
+	private void checkQueries(boolean useVectors) {
+		PositionBatch batch = fill();
+		batch.setUseVectors(useVectors);
+		assertEquals(useVectors && PositionBatch.isVectorsPresent(),
+				batch.isUseVectors());
+
+		long[] out = new long[SIZE];
+		boolean[] checks = new boolean[SIZE];
+		long[][] board = new long[2][7];
+
+		batch.getOccupancy(out);
+		for (int i = 0; i < SIZE; i++) {
+			batch.get(i, board);
+			assertEquals(Board.getBitMap(board), out[i]);
+		}
+
+		for (int color = 0; color < 2; color++) {
+			batch.getOccupancy(color, out);
+			for (int i = 0; i < SIZE; i++) {
+				batch.get(i, board);
+				assertEquals(Board.getBitMapForColor(board, color), out[i]);
+			}
+
+			batch.getKnightAttacks(color, out);
+			for (int i = 0; i < SIZE; i++) {
+				batch.get(i, board);
+				assertEquals(getAttacks(Commons.PieceType.KNIGHT,
+						board[color][Commons.PieceType.KNIGHT]), out[i]);
+			}
+
+			batch.getKingAttacks(color, out);
+			for (int i = 0; i < SIZE; i++) {
+				batch.get(i, board);
+				assertEquals(getAttacks(Commons.PieceType.KING,
+						board[color][Commons.PieceType.KING]), out[i]);
+			}
+
+			batch.getPawnAttacks(color, out);
+			for (int i = 0; i < SIZE; i++) {
+				batch.get(i, board);
+				long pawns = board[color][Commons.PieceType.PAWN];
+				long[] pieces = new long[7];
+				pieces[Commons.PieceType.PAWN] = pawns;
+				assertEquals(MoveGenerator.getAttackedSquares(color, pieces, 0),
+						out[i]);
+			}
+
+			batch.getAttackedSquares(color, out);
+			for (int i = 0; i < SIZE; i++) {
+				batch.get(i, board);
+				assertEquals(MoveGenerator.getAttackedSquares(color,
+						board[color], Board.getBitMap(board)), out[i]);
+			}
+		}
+
+		batch.isInCheck(checks);
+		int inCheck = 0;
+		for (int i = 0; i < SIZE; i++) {
+			int side = batch.get(i, board);
+			int king = Long
+					.numberOfTrailingZeros(board[side][Commons.PieceType.KING]);
+			assertEquals(Board.isAttacked(king, side, board), checks[i]);
+			inCheck += checks[i] ? 1 : 0;
+		}
+		assertTrue(inCheck > 0);
+	}
+
+	private static long getAttacks(int type, long pieces) {
+		long attacks = 0;
+		for (long b = pieces; b != 0; b &= b - 1) {
+			attacks |= Commons.Bitmaps.ATTACKMAP[type][Long
+					.numberOfTrailingZeros(b)];
+		}
+		return attacks;
+	}
+
+	/**
+	 * The perft positions and the ones reached from them by random moves.
+	 */
+
+	static PositionBatch fill() {
+		Random random = new Random(42);
+		PositionBatch batch = new PositionBatch(SIZE);
+		MoveList moves = new MoveList();
+		UndoStack undo = new UndoStack();
+
+		for (int i = 0; batch.size() < SIZE; i++) {
+			long[][] board = new long[2][7];
+			int side = Fen.parse(Perft.POSITIONS[i % Perft.POSITIONS.length].fen,
+					board);
+			for (int ply = 0; ply < 40 && batch.size() < SIZE; ply++) {
+				batch.add(board, side);
+				moves.clear();
+				if (Board.getValidMovesForColor(side, board, moves) == 0) {
+					break;
+				}
+				Board.makeMove(moves.get(random.nextInt(moves.size())), side,
+						board, undo);
+				side = Board.oppositeSide(side);
+			}
+		}
+		return batch;
+	}
+
+}
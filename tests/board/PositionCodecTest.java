@@ -0,0 +1,113 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class PositionCodecTest {
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(PositionCodec.SIZE);
+	private final long[][] decoded = new long[2][7];
+
+	@Test
+	public void testStandardPositions() {
+		long[][] board = new long[2][7];
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			int side = Fen.parse(entry.fen, board);
+			assertSame(board, side);
+		}
+
+		String fen = "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b Kq e3 0 3";
+		assertSame(board, Fen.parse(fen, board));
+	}
+
+	@Test
+	public void testPositionsOnTheWay() {
+		// Castling, en passant and promotions all happen in a few plies
+		long[][] board = new long[2][7];
+		int side = Fen.parse(Perft.POSITIONS[1].fen, board);
+		walk(board, side, 2, new UndoStack());
+
+		side = Fen.parse(Perft.POSITIONS[3].fen, board);
+		walk(board, side, 2, new UndoStack());
+	}
+
+	@Test
+	public void testBulk() {
+		long[][][] boards = new long[Perft.POSITIONS.length][2][7];
+		int[] sides = new int[boards.length];
+		for (int i = 0; i < boards.length; i++) {
+			sides[i] = Fen.parse(Perft.POSITIONS[i].fen, boards[i]);
+		}
+
+		ByteBuffer bulk = ByteBuffer.allocateDirect(boards.length
+				* PositionCodec.SIZE + 10);
+		assertEquals(boards.length * PositionCodec.SIZE, PositionCodec.encode(
+				boards, sides, boards.length, bulk));
+		bulk.flip();
+
+		long[][][] read = new long[boards.length + 1][2][7];
+		int[] readSides = new int[read.length];
+		assertEquals(boards.length, PositionCodec.decode(bulk, read,
+				readSides));
+		for (int i = 0; i < boards.length; i++) {
+			assertArrayEquals(boards[i], read[i]);
+			assertEquals(sides[i], readSides[i]);
+		}
+	}
+
+	@Test
+	public void testPosition() {
+		Position position = new Position(Board.initBitBoard(),
+				Commons.Color.BLACK);
+		PositionCodec.encode(position, buffer);
+		buffer.flip();
+
+		Position read = new Position(new long[2][7]);
+		assertEquals(Commons.Color.BLACK, PositionCodec.decode(buffer, read));
+		assertEquals(position.getKey(), read.getKey());
+	}
+
+	private void walk(long[][] board, int side, int depth, UndoStack undo) {
+		assertSame(board, side);
+		if (depth == 0) {
+			return;
+		}
+
+		MoveList moves = new MoveList();
+		Board.getValidMovesForColor(side, board, moves);
+		for (int i = 0; i < moves.size(); i++) {
+			Board.makeMove(moves.get(i), side, board, undo);
+			walk(board, Board.oppositeSide(side), depth - 1, undo);
+			Board.unmakeMove(moves.get(i), side, board, undo);
+		}
+	}
+
+	/**
+	 * Encode and decode a board and check the pieces are the same and the
+	 * FEN, which only has the castling rights that can still be used.
+	 */
+
+	private void assertSame(long[][] board, int side) {
+		buffer.clear();
+		PositionCodec.encode(board, side, buffer);
+		assertEquals(PositionCodec.SIZE, buffer.position());
+
+		buffer.flip();
+		assertEquals(side, PositionCodec.decode(buffer, decoded));
+		for (int type = 0; type < 6; type++) {
+			assertEquals(board[Commons.Color.WHITE][type],
+					decoded[Commons.Color.WHITE][type]);
+			assertEquals(board[Commons.Color.BLACK][type],
+					decoded[Commons.Color.BLACK][type]);
+		}
+
+		assertEquals(Fen.write(board, side, new StringBuilder()).toString(),
+				Fen.write(decoded, side, new StringBuilder()).toString());
+	}
+
+}
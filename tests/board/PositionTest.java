@@ -0,0 +1,162 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class PositionTest {
+
+	private final UndoStack undo = new UndoStack();
+
+	@Test
+	public void testStartPosition() {
+		Position position = new Position();
+		long[][] board = Board.initBitBoard();
+
+		assertEquals(Board.getBitMap(board), position.getBitMap());
+		assertEquals(Board.getBitMapForColor(board, Commons.Color.WHITE),
+				position.getBitMapForColor(Commons.Color.WHITE));
+		assertEquals(Board.getBitMapForColor(board, Commons.Color.BLACK),
+				position.getBitMapForColor(Commons.Color.BLACK));
+
+		// Both sides are the same, only the phase is not 0
+		assertEquals(0, position.getMaterial());
+		assertEquals(0, position.getMiddlegame());
+		assertEquals(0, position.getEndgame());
+		assertEquals(PieceSquareTables.MAX_PHASE, position.getPhase());
+	}
+
+	@Test
+	public void testSetAndRemove() {
+		Position position = new Position();
+
+		position.setPieceAtSquare(27, Commons.PieceType.ROOK,
+				Commons.Color.BLACK);
+		assertConsistent(position);
+		assertEquals(Commons.PieceType.ROOK,
+				position.getPieceAtSquare(27, Commons.Color.BLACK));
+		assertEquals(-1, position.getPieceAtSquare(27, Commons.Color.WHITE));
+
+		position.removePieceAtSquare(27, Commons.PieceType.ROOK,
+				Commons.Color.BLACK);
+		assertConsistent(position);
+
+		position.removePieceAtSquare(52);
+		assertConsistent(position);
+		assertFalse(Board.isSquareOccupied(52, position));
+
+		position.move(Move.encode(51, 35, Commons.PieceType.PAWN),
+				Commons.Color.WHITE);
+		assertConsistent(position);
+	}
+
+	@Test
+	public void testMakeAndUnmakeKeepsOccupancy() {
+		// Castling, en passant and promotions all happen in a few plies
+		long[][] board = new long[2][7];
+		int side = Fen.parse(Perft.POSITIONS[1].fen, board);
+		walk(new Position(board, side), side, 3);
+
+		side = Fen.parse(Perft.POSITIONS[3].fen, board);
+		walk(new Position(board, side), side, 3);
+	}
+
+	@Test
+	public void testKeyOfTransposition() {
+		Position position = new Position();
+		long start = position.getKey();
+		assertEquals(Zobrist.getKey(Board.initBitBoard(), Commons.Color.WHITE),
+				start);
+
+		// Moving the knights out and back gives the start position again
+		int[][] moves = { { 62, 45 }, { 6, 21 }, { 45, 62 }, { 21, 6 } };
+		int side = Commons.Color.WHITE;
+		for (int i = 0; i < moves.length; i++) {
+			position.makeMove(Move.encode(moves[i][0], moves[i][1],
+					Commons.PieceType.KNIGHT), side, undo);
+			assertEquals(i == moves.length - 1, start == position.getKey());
+			side = Board.oppositeSide(side);
+		}
+		assertEquals(Commons.Color.WHITE, position.getSide());
+	}
+
+	@Test
+	public void testKeyOfCastlingRights() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1", board);
+		Position position = new Position(board, side);
+
+		// The kings go out and back, their rooks keep their flags but no
+		// side can castle any more
+		int[][] moves = { { 60, 61 }, { 4, 5 }, { 61, 60 }, { 5, 4 } };
+		for (int i = 0; i < moves.length; i++) {
+			position.makeMove(Move.encode(moves[i][0], moves[i][1],
+					Commons.PieceType.KING), side, undo);
+			side = Board.oppositeSide(side);
+		}
+
+		long[][] noRights = new long[2][7];
+		Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R w - - 0 1", noRights);
+		assertEquals(Zobrist.getKey(noRights, Commons.Color.WHITE),
+				position.getKey());
+	}
+
+	@Test
+	public void testSameMovesAsBoard() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(Perft.POSITIONS[1].fen, board);
+		Position position = new Position(board);
+
+		MoveList fromBoard = new MoveList();
+		MoveList fromPosition = new MoveList();
+		Board.getValidMovesForColor(side, board, fromBoard);
+		Board.getValidMovesForColor(side, position, fromPosition);
+
+		assertEquals(fromBoard.size(), fromPosition.size());
+		for (int i = 0; i < fromBoard.size(); i++) {
+			assertEquals(fromBoard.get(i), fromPosition.get(i));
+		}
+
+		for (int square = 0; square < 64; square++) {
+			assertEquals(Board.isAttacked(square, side, board),
+					Board.isAttacked(square, side, position));
+		}
+	}
+
+	private void walk(Position position, int side, int depth) {
+		assertConsistent(position);
+		if (depth == 0) {
+			return;
+		}
+
+		MoveList moves = new MoveList();
+		Board.getValidMovesForColor(side, position, moves);
+		for (int i = 0; i < moves.size(); i++) {
+			position.makeMove(moves.get(i), side, undo);
+			walk(position, Board.oppositeSide(side), depth - 1);
+			position.unmakeMove(moves.get(i), side, undo);
+			assertConsistent(position);
+		}
+	}
+
+	private static void assertConsistent(Position position) {
+		long[][] board = position.getBoard();
+		assertEquals(Zobrist.getKey(board, position.getSide()),
+				position.getKey());
+		assertEquals(Board.getBitMap(board), position.getBitMap());
+		assertEquals(Board.getBitMapForColor(board, Commons.Color.WHITE),
+				position.getBitMapForColor(Commons.Color.WHITE));
+		assertEquals(Board.getBitMapForColor(board, Commons.Color.BLACK),
+				position.getBitMapForColor(Commons.Color.BLACK));
+
+		Position fresh = new Position(Board.deepCopy2DArray(board),
+				position.getSide());
+		assertEquals(fresh.getMaterial(), position.getMaterial());
+		assertEquals(fresh.getMiddlegame(), position.getMiddlegame());
+		assertEquals(fresh.getEndgame(), position.getEndgame());
+		assertEquals(fresh.getPhase(), position.getPhase());
+	}
+
+}
@@ -0,0 +1,72 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class SanTest {
+
+	private final long[][] board = new long[2][7];
+
+	@Test
+	public void testPawnMoves() {
+		int side = Fen.parse(Fen.START_POSITION, board);
+
+		assertEquals(Move.encode(52, 36, Commons.PieceType.PAWN), San.parse(
+				"e4", side, board));
+		assertEquals(Move.encode(62, 45, Commons.PieceType.KNIGHT), San
+				.parse("Nf3", side, board));
+
+		side = Fen.parse("4k3/1P6/8/3pP3/8/8/8/4K3 w - d6 0 1", board);
+		assertEquals(Move.encode(28, 19, Commons.PieceType.PAWN), San.parse(
+				"exd6", side, board));
+		assertEquals(Move.encode(9, 1, Commons.PieceType.QUEEN,
+				Move.FLAG_PROMOTION), San.parse("b8=Q+", side, board));
+		assertEquals(Move.encode(9, 1, Commons.PieceType.KNIGHT,
+				Move.FLAG_PROMOTION), San.parse("b8N", side, board));
+	}
+
+	@Test
+	public void testTellPiecesApart() {
+		int side = Fen.parse("4k3/R7/8/8/8/5N2/8/RN2K3 w - - 0 1", board);
+
+		assertEquals(57, Move.fromSquare(San.parse("Nbd2", side, board)));
+		assertEquals(45, Move.fromSquare(San.parse("Nfd2", side, board)));
+		assertEquals(56, Move.fromSquare(San.parse("R1a4", side, board)));
+		assertEquals(8, Move.fromSquare(San.parse("R7xa4!?", side, board)));
+
+		try {
+			San.parse("Nd2", side, board);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Ambiguous"));
+		}
+	}
+
+	@Test
+	public void testCastling() {
+		int side = Fen.parse("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", board);
+
+		assertEquals(Move.encode(4, 6, Commons.PieceType.KING,
+				Move.FLAG_CASTLE), San.parse("O-O", side, board));
+		assertEquals(Move.encode(4, 2, Commons.PieceType.KING,
+				Move.FLAG_CASTLE), San.parse("0-0-0", side, board));
+	}
+
+	@Test
+	public void testNotLegal() {
+		int side = Fen.parse(Fen.START_POSITION, board);
+		String[] moves = { "e5", "Ke2", "O-O", "Nd4", "x", "", "e4e5" };
+
+		for (String move : moves) {
+			try {
+				San.parse(move, side, board);
+				fail(move);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+}
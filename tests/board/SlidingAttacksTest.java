@@ -0,0 +1,107 @@
+package board;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import utils.Commons;
+
+public class SlidingAttacksTest {
+
+	@Test
+	public void testSameAsLoop() {
+		Random random = new Random(42);
+
+		for (int i = 0; i < 2000; i++) {
+			// Sparse and dense boards
+			long occupied = random.nextLong() & random.nextLong();
+			if ((i & 1) == 0) {
+				occupied |= random.nextLong();
+			}
+
+			for (int square = 0; square < 64; square++) {
+				long rook = SlidingAttacks.getLoopAttacks(
+						Commons.PieceType.ROOK, square, occupied);
+				long bishop = SlidingAttacks.getLoopAttacks(
+						Commons.PieceType.BISHOP, square, occupied);
+				long queen = SlidingAttacks.getLoopAttacks(
+						Commons.PieceType.QUEEN, square, occupied);
+
+				assertEquals(rook,
+						SlidingAttacks.getRookAttacks(square, occupied));
+				assertEquals(rook,
+						SlidingAttacks.getRookAttacksCompress(square, occupied));
+				assertEquals(bishop,
+						SlidingAttacks.getBishopAttacks(square, occupied));
+				assertEquals(bishop, SlidingAttacks.getBishopAttacksCompress(
+						square, occupied));
+				assertEquals(queen,
+						SlidingAttacks.getQueenAttacks(square, occupied));
+				assertEquals(queen, Board.getPieceAttacks(
+						Commons.PieceType.QUEEN, square, occupied));
+			}
+		}
+
+	}
+
+	@Test
+	public void testCompress() {
+		assertEquals(0, SlidingAttacks.compress(0xFFL, 0));
+		assertEquals(0xFL, SlidingAttacks.compress(0xF0L, 0xF0L));
+		assertEquals(0x5L, SlidingAttacks.compress(0x8000000000000001L,
+				0x8000000000000101L));
+		assertEquals(0xFFFFFFFFFFFFFFFFL,
+				SlidingAttacks.compress(-1L, -1L));
+
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			long value = random.nextLong();
+			long mask = random.nextLong() & random.nextLong();
+			assertEquals(SlidingAttacks.compressLoop(value, mask),
+					SlidingAttacks.compress(value, mask));
+		}
+	}
+
+	@Test
+	public void testFindMagic() {
+		// A corner, an edge and a center square for both sliders
+		int[] squares = { 0, 31, 27 };
+		int[] types = { Commons.PieceType.ROOK, Commons.PieceType.BISHOP };
+		Random random = new Random(1);
+
+		for (int type : types) {
+			for (int square : squares) {
+				long magic = SlidingAttacks.findMagic(type, square, random);
+				long mask = Commons.Bitmaps.BLOCKERMAP[type][square];
+				int shift = 64 - Long.bitCount(mask);
+				long[] table = new long[1 << Long.bitCount(mask)];
+				boolean[] used = new boolean[table.length];
+
+				// Every set of blockers has to find its own attacks, two
+				// sets can only share an index if their attacks are equal
+				long blockers = 0;
+				do {
+					int index = (int) ((blockers * magic) >>> shift);
+					long attacks = SlidingAttacks.getLoopAttacks(type, square,
+							blockers);
+					if (used[index]) {
+						assertEquals(table[index], attacks);
+					}
+					table[index] = attacks;
+					used[index] = true;
+					blockers = (blockers - mask) & mask;
+				} while (blockers != 0);
+
+				do {
+					assertEquals(
+							SlidingAttacks.getLoopAttacks(type, square, blockers),
+							table[(int) ((blockers * magic) >>> shift)]);
+					blockers = (blockers - mask) & mask;
+				} while (blockers != 0);
+			}
+		}
+	}
+
+}
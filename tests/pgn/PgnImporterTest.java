@@ -0,0 +1,164 @@
+package pgn;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import board.Board;
+import board.MoveList;
+import utils.Commons;
+
+public class PgnImporterTest {
+
+	private static final String OPERA = "[Event \"Paris\"]\n"
+			+ "[White \"Morphy\"]\n[Black \"Duke Karl / Count Isouard\"]\n"
+			+ "[Result \"1-0\"]\n\n"
+			+ "1.e4 e5 2.Nf3 d6 3.d4 Bg4 {This is a weak move\n"
+			+ "already} 4.dxe5 Bxf3 5.Qxf3 dxe5 6.Bc4 Nf6 7.Qb3 Qe7\n"
+			+ "8.Nc3 c6 9.Bg5 (9.Nxb5?? cxb5 (9... Qb4)) b5 $1 10.Nxb5 cxb5\n"
+			+ "11.Bxb5+ Nbd7 12.O-O-O Rd8 13.Rxd7 Rxd7 14.Rd1 Qe6 15.Bxd7+\n"
+			+ "Nxd7 16.Qb8+ Nxb8 17.Rd8# 1-0\n\n";
+
+	private static final String PROMOTION = "[Event \"Study\"]\n"
+			+ "[SetUp \"1\"]\n[FEN \"8/P7/8/8/8/8/8/k6K w - - 0 1\"]\n\n"
+			+ "1. a8=Q+ Kb2 ; the king runs\n2. Qb7+ *\n\n";
+
+	private static final String ILLEGAL = "[Event \"Broken\"]\n\n"
+			+ "1. e4 e5 2. Ke3 1-0\n\n";
+
+	@Test
+	public void testReplay() throws IOException {
+		StringBuilder pgn = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			pgn.append(i % 10 == 3 ? ILLEGAL : i % 2 == 0 ? OPERA : PROMOTION);
+		}
+
+		final Map<Long, Integer> plies = new ConcurrentHashMap<Long, Integer>();
+		final Map<Long, Integer> mated = new ConcurrentHashMap<Long, Integer>();
+		final Map<Long, String> errors = new ConcurrentHashMap<Long, String>();
+
+		PgnImporter importer = new PgnImporter(3);
+		long games = importer.run(new StringReader(pgn.toString()),
+				new PgnImporter.Listener() {
+					public void gameReplayed(long number, long[][] board,
+							int side, int ply) {
+						// Black is mated at the end of the Opera game
+						if (side == Commons.Color.BLACK
+								&& Board.getValidMovesForColor(side, board,
+										new MoveList()) == 0) {
+							mated.put(number, ply);
+						}
+						plies.put(number, ply);
+					}
+
+					public void gameFailed(long number, String error) {
+						errors.put(number, error);
+					}
+				}, new PrintStream(new ByteArrayOutputStream()));
+
+		assertEquals(1000, games);
+		assertEquals(900, plies.size());
+		assertEquals(100, errors.size());
+
+		for (long i = 0; i < 1000; i++) {
+			if (i % 10 == 3) {
+				assertEquals("Not a legal move: Ke3", errors.get(i));
+			} else {
+				assertEquals(i % 2 == 0 ? 33 : 3, (int) plies.get(i));
+				assertEquals(i % 2 == 0, mated.containsKey(i));
+			}
+		}
+	}
+
+	@Test
+	public void testCastleWithZeros() throws IOException {
+		final long[][] replayed = new long[2][7];
+		final Map<Long, String> errors = new ConcurrentHashMap<Long, String>();
+		String pgn = "[Event \"Zeros\"]\n\n"
+				+ "1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. 0-0 *\n\n";
+
+		long games = new PgnImporter(1).run(new StringReader(pgn),
+				new PgnImporter.Listener() {
+					public void gameReplayed(long number, long[][] board,
+							int side, int ply) {
+						Board.copyBoard(board, replayed);
+					}
+
+					public void gameFailed(long number, String error) {
+						errors.put(number, error);
+					}
+				}, new PrintStream(new ByteArrayOutputStream()));
+
+		assertEquals(1, games);
+		assertTrue(errors.isEmpty());
+		assertEquals(Board.masks[62],
+				replayed[Commons.Color.WHITE][Commons.PieceType.KING]);
+		assertTrue((replayed[Commons.Color.WHITE][Commons.PieceType.ROOK]
+				& Board.masks[61]) != 0);
+	}
+
+	@Test
+	public void testReadError() throws InterruptedException {
+		// Some games and then the stream breaks
+		Reader broken = new FilterReader(new StringReader(OPERA + OPERA)) {
+			@Override
+			public int read(char[] buffer, int offset, int length)
+					throws IOException {
+				int read = super.read(buffer, offset, length);
+				if (read == -1) {
+					throw new IOException("Broken");
+				}
+				return read;
+			}
+		};
+
+		try {
+			new PgnImporter(2).run(broken, new PgnImporter.Listener() {
+				public void gameReplayed(long number, long[][] board,
+						int side, int ply) {
+				}
+
+				public void gameFailed(long number, String error) {
+				}
+			}, new PrintStream(new ByteArrayOutputStream()));
+			fail("The stream is broken");
+		} catch (IOException e) {
+			assertEquals("Broken", e.getMessage());
+		}
+
+		// The workers do not wait for more games
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("pgn-")) {
+				thread.join(5000);
+				assertFalse(thread.getName(), thread.isAlive());
+			}
+		}
+
+		try {
+			new PgnImporter(0);
+			fail("An import needs a thread");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testReader() throws IOException {
+		PgnReader reader = new PgnReader(new StringReader("\n\n" + OPERA
+				+ PROMOTION + "\n"));
+
+		assertEquals(OPERA, reader.nextGame().replaceFirst("^\n\n", ""));
+		assertTrue(reader.nextGame().startsWith("[Event \"Study\"]"));
+		assertNull(reader.nextGame());
+	}
+
+}
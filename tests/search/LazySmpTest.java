@@ -0,0 +1,100 @@
+package search;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import board.Board;
+import board.Fen;
+import board.Move;
+import board.Position;
+import utils.Commons;
+
+public class LazySmpTest {
+
+	@Test
+	public void testFindsSameMate() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse("k7/8/2K5/8/8/8/8/7R w - - 0 1", board);
+		long[][] copy = Board.deepCopy2DArray(board);
+
+		LazySmp smp = new LazySmp(4, new TranspositionTable(4));
+		int move = smp.search(board, side, 4, null);
+
+		// Kb6 and Kc7 both mate in two
+		assertEquals(Search.MATE - 3, smp.getScore());
+		assertEquals("c6", Board.getSquareName(Move.fromSquare(move)));
+		assertArrayEquals(copy, board);
+		assertTrue(smp.getNodes() > 0);
+	}
+
+	@Test
+	public void testTableGivesSameScore() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(
+				"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+				board);
+
+		// The table only saves work, a fixed depth gives the same score
+		Search plain = new Search(new Position(Board.deepCopy2DArray(board),
+				side));
+		plain.setMaxDepth(5);
+		plain.search(null);
+
+		TranspositionTable table = new TranspositionTable(4);
+		Search hashed = new Search(new Position(Board.deepCopy2DArray(board),
+				side), table);
+		hashed.setMaxDepth(5);
+		hashed.search(null);
+
+		assertEquals(plain.getScore(), hashed.getScore());
+		assertTrue(hashed.getNodes() < plain.getNodes());
+		assertTrue(table.getHits() > 0);
+	}
+
+	@Test
+	public void testStopBeforeStart() {
+		Search search = new Search(new Position());
+		search.stop();
+		search.search(null);
+		assertEquals(0, search.getDepth());
+
+		// The next search is not stopped
+		search.setMaxDepth(2);
+		search.search(null);
+		assertEquals(2, search.getDepth());
+	}
+
+	@Test
+	public void testScaling() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LazySmp.runScaling(Board.initBitBoard(), Commons.Color.WHITE, 3, 3,
+				1, new PrintStream(out));
+
+		String[] lines = out.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[2].startsWith("threads  3 depth 3"));
+	}
+
+	@Test
+	public void testNoThreads() {
+		try {
+			new LazySmp(0, new TranspositionTable(1));
+			fail("A search needs a thread");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		try {
+			LazySmp.runScaling(Board.initBitBoard(), Commons.Color.WHITE, 1,
+					0, 1, new PrintStream(new ByteArrayOutputStream()));
+			fail("A search needs a thread");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+}
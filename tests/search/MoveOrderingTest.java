@@ -0,0 +1,103 @@
+package search;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import board.Board;
+import board.Fen;
+import board.Move;
+import board.MoveList;
+import board.Position;
+
+public class MoveOrderingTest {
+
+	// The pawn and the knight can take the queen, the queen can take the rook
+	private static final String FEN = "6k1/8/8/4q3/r2P4/5N2/8/3Q2K1 w - - 0 1";
+
+	private final MoveOrdering ordering = new MoveOrdering();
+	private final MoveList list = new MoveList();
+	private Position position;
+
+	@Before
+	public void setUp() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(FEN, board);
+		position = new Position(board, side);
+		Board.getValidMovesForColor(side, position, list);
+	}
+
+	@Test
+	public void testMvvLva() {
+		ordering.score(list, 0, position, 0, 0);
+		assertEquals("d4e5", pick(0));
+		assertEquals("f3e5", pick(1));
+		assertEquals("d1a4", pick(2));
+	}
+
+	@Test
+	public void testFirstMove() {
+		ordering.score(list, 0, position, find("g1h1"), 0);
+		assertEquals("g1h1", pick(0));
+		assertEquals("d4e5", pick(1));
+	}
+
+	@Test
+	public void testKillerAfterCaptures() {
+		ordering.cutoff(find("g1h1"), 5, 1, 3, 0, position);
+
+		ordering.score(list, 1, position, 0, 0);
+		pick(0, 1);
+		pick(1, 1);
+		assertEquals("d1a4", pick(2, 1));
+		assertEquals("g1h1", pick(3, 1));
+	}
+
+	@Test
+	public void testHistory() {
+		// Deep cutoffs count more than many shallow ones
+		ordering.cutoff(find("g1f1"), 1, 10, 1, 0, position);
+		ordering.cutoff(find("g1f1"), 1, 11, 1, 0, position);
+		ordering.cutoff(find("g1g2"), 1, 12, 4, 0, position);
+
+		ordering.score(list, 0, position, 0, 0);
+		for (int i = 0; i < 3; i++) {
+			pick(i);
+		}
+		assertEquals("g1g2", pick(3));
+		assertEquals("g1f1", pick(4));
+	}
+
+	@Test
+	public void testFirstMoveCutoffRate() {
+		assertEquals(0, ordering.getFirstMoveCutoffRate(), 0);
+
+		ordering.cutoff(find("d4e5"), 0, 0, 1, 0, position);
+		ordering.cutoff(find("d4e5"), 0, 0, 1, 0, position);
+		ordering.cutoff(find("g1h1"), 2, 0, 1, 0, position);
+		assertEquals(3, ordering.getCutoffs());
+		assertEquals(2.0 / 3, ordering.getFirstMoveCutoffRate(), 1e-9);
+
+		ordering.newSearch();
+		assertEquals(0, ordering.getCutoffs());
+	}
+
+	private int find(String algebraic) {
+		for (int i = 0; i < list.size(); i++) {
+			if (Move.toAlgebraic(list.get(i)).equals(algebraic)) {
+				return list.get(i);
+			}
+		}
+		throw new AssertionError("No move " + algebraic);
+	}
+
+	private String pick(int index) {
+		return pick(index, 0);
+	}
+
+	private String pick(int index, int ply) {
+		return Move.toAlgebraic(ordering.pick(list, index, ply));
+	}
+
+}
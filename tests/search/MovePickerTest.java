@@ -0,0 +1,101 @@
+package search;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import board.Board;
+import board.Fen;
+import board.Move;
+import board.MoveList;
+import board.Perft;
+import board.Position;
+
+public class MovePickerTest {
+
+	private final MoveOrdering ordering = new MoveOrdering();
+	private final MovePicker picker = new MovePicker(ordering, 0);
+	private final MoveList legal = new MoveList();
+
+	@Test
+	public void testStages() {
+		Position position = position("6k1/8/8/4q3/r2P4/5N2/8/3Q2K1 w - - 0 1");
+		int first = find("d1d3");
+		ordering.cutoff(find("g1h1"), 3, 0, 2, 0, position);
+
+		picker.reset(position, first, 0);
+		assertEquals("d1d3", Move.toAlgebraic(picker.next()));
+		assertEquals("d4e5", Move.toAlgebraic(picker.next()));
+		assertEquals("f3e5", Move.toAlgebraic(picker.next()));
+		assertEquals("d1a4", Move.toAlgebraic(picker.next()));
+		assertEquals("g1h1", Move.toAlgebraic(picker.next()));
+
+		// The rest are quiet and none of them come twice
+		int count = 5;
+		for (int move; (move = picker.next()) != 0; count++) {
+			assertFalse(move == first || Move.toAlgebraic(move).equals("g1h1"));
+		}
+		assertEquals(legal.size(), count);
+		assertEquals(0, picker.next());
+	}
+
+	@Test
+	public void testSameMovesAsGenerator() {
+		for (Perft.Entry entry : Perft.POSITIONS) {
+			Position position = position(entry.fen);
+
+			// Moves from another position that are not legal here
+			int illegal = Move.encode(0, 63, 0);
+			ordering.newSearch();
+			ordering.cutoff(Move.encode(9, 17, 5), 1, 0, 1, 0, position);
+			ordering.cutoff(Move.encode(54, 46, 5), 1, 0, 1, 0, position);
+
+			for (int first : new int[] { 0, illegal, legal.get(0),
+					legal.get(legal.size() - 1) }) {
+				picker.reset(position, first, 0);
+				MoveList picked = new MoveList();
+				for (int move; (move = picker.next()) != 0;) {
+					assertTrue(contains(legal, move));
+					assertFalse(contains(picked, move));
+					picked.add(move);
+				}
+				assertEquals(entry.name, legal.size(), picked.size());
+			}
+		}
+	}
+
+	@Test
+	public void testNoMoves() {
+		Position position = position("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+		picker.reset(position, 0, 0);
+		assertEquals(0, picker.next());
+	}
+
+	private Position position(String fen) {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(fen, board);
+		Position position = new Position(board, side);
+		legal.clear();
+		Board.getValidMovesForColor(side, position, legal);
+		return position;
+	}
+
+	private int find(String algebraic) {
+		for (int i = 0; i < legal.size(); i++) {
+			if (Move.toAlgebraic(legal.get(i)).equals(algebraic)) {
+				return legal.get(i);
+			}
+		}
+		throw new AssertionError("No move " + algebraic);
+	}
+
+	private static boolean contains(MoveList moves, int move) {
+		for (int i = 0; i < moves.size(); i++) {
+			if (moves.get(i) == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
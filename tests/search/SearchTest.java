@@ -0,0 +1,193 @@
+package search;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+import board.Board;
+import board.Fen;
+import board.GameHistory;
+import board.Move;
+import board.MoveList;
+import board.Perft;
+import board.Position;
+import board.UndoStack;
+
+public class SearchTest {
+
+	@Test
+	public void testMateInOne() {
+		Search search = search("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 3);
+
+		assertEquals("a1a8", Move.toAlgebraic(search.getBestMove()));
+		assertEquals(Search.MATE - 1, search.getScore());
+	}
+
+	@Test
+	public void testQuiescenceInCheck() {
+		// At depth 1 the mate is only seen if the quiescence search looks
+		// for evasions instead of standing pat
+		Search search = search("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 1);
+
+		assertEquals("a1a8", Move.toAlgebraic(search.getBestMove()));
+		assertEquals(Search.MATE - 1, search.getScore());
+	}
+
+	@Test
+	public void testMateBeforeFiftyMoves() {
+		// The mate is the hundredth move without a pawn move or capture
+		long[][] board = new long[2][7];
+		int side = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 99 60", board);
+		Position position = new Position(board, side);
+		GameHistory history = new GameHistory();
+		history.reset(position.getKey(), 99);
+
+		Search search = new Search(position);
+		search.setHistory(history);
+		search.setMaxDepth(3);
+		search.search(null);
+		assertEquals("a1a8", Move.toAlgebraic(search.getBestMove()));
+		assertEquals(Search.MATE - 1, search.getScore());
+
+		// Any other move is a draw
+		play(position, history, new UndoStack(), "g1f1");
+		search = new Search(position);
+		search.setHistory(history);
+		search.setMaxDepth(3);
+		search.search(null);
+		assertEquals(0, search.getScore());
+	}
+
+	@Test
+	public void testMateInTwo() {
+		// 1. Kb6 Kb8 2. Rh8#
+		Search search = search("k7/8/2K5/8/8/8/8/7R w - - 0 1", 4);
+		assertEquals(Search.MATE - 3, search.getScore());
+		assertEquals(3, search.getPrincipalVariation().length);
+	}
+
+	@Test
+	public void testTakeFreePiece() {
+		Search search = search("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1", 3);
+		assertEquals("d2d5", Move.toAlgebraic(search.getBestMove()));
+		// A rook up, give or take where the pieces stand
+		assertEquals(Evaluation.PIECE_VALUES[2], search.getScore(), 100);
+	}
+
+	@Test
+	public void testQuiescence() {
+		// At depth 1 the pawn looks free, the quiescence search sees it is
+		// defended
+		Search search = search("4k3/8/3p4/4p3/8/8/8/4QK2 w - - 0 1", 1);
+		assertFalse("e1e5".equals(Move.toAlgebraic(search.getBestMove())));
+		assertTrue(search.getScore() > Evaluation.PIECE_VALUES[1] - 300);
+		assertTrue(search.getQuiescenceNodes() > 0);
+		assertTrue(search.getQuiescenceNodes() < search.getNodes());
+	}
+
+	@Test
+	public void testFullEvaluationSearchesSameTree() {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(Perft.POSITIONS[1].fen, board);
+		Search incremental = new Search(new Position(board, side));
+		Search full = new Search(new Position(Board.deepCopy2DArray(board),
+				side));
+		incremental.setMaxDepth(4);
+		full.setMaxDepth(4);
+		full.setFullEvaluation(true);
+
+		assertEquals(full.search(null), incremental.search(null));
+		assertEquals(full.getScore(), incremental.getScore());
+		assertEquals(full.getNodes(), incremental.getNodes());
+	}
+
+	@Test
+	public void testStalemate() {
+		Search search = search("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", 3);
+		assertEquals(0, search.getBestMove());
+		assertEquals(0, search.getScore());
+	}
+
+	@Test
+	public void testRepetitionIsDraw() {
+		// Black is a queen down and can go back to the position the game
+		// started from
+		long[][] board = new long[2][7];
+		int side = Fen.parse("k7/8/8/8/8/8/3Q4/6NK w - - 0 1", board);
+		Position position = new Position(board, side);
+		GameHistory history = new GameHistory();
+		history.reset(position.getKey(), 0);
+		UndoStack undo = new UndoStack();
+		for (String move : new String[] { "g1f3", "a8b8", "f3g1" }) {
+			play(position, history, undo, move);
+		}
+		long[][] copy = Board.deepCopy2DArray(board);
+
+		Search search = new Search(position);
+		search.setHistory(history);
+		search.setMaxDepth(4);
+		search.search(null);
+		assertEquals("b8a8", Move.toAlgebraic(search.getBestMove()));
+		assertEquals(0, search.getScore());
+		assertEquals(4, history.size());
+		assertArrayEquals(copy, board);
+
+		// Without the game it is only lost
+		search = new Search(position);
+		search.setMaxDepth(4);
+		search.search(null);
+		assertTrue(search.getScore() < -Evaluation.PIECE_VALUES[1] / 2);
+	}
+
+	@Test
+	public void testLimits() {
+		long[][] board = Board.initBitBoard();
+		long[][] copy = Board.deepCopy2DArray(board);
+		Position position = new Position(board);
+		Search search = new Search(position);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		search.setMaxDepth(4);
+		search.search(new PrintStream(out));
+		assertEquals(4, search.getDepth());
+		assertEquals(4, out.toString().split("\n").length);
+		assertTrue(out.toString().startsWith("depth 1 score"));
+		assertArrayEquals(copy, board);
+
+		// A node limit stops in the middle of an iteration
+		search.setMaxDepth(Search.MAX_PLY);
+		search.setMaxNodes(50000);
+		assertTrue(search.search(null) != 0);
+		assertEquals(50000, search.getNodes());
+		assertArrayEquals(copy, board);
+	}
+
+	private static void play(Position position, GameHistory history,
+			UndoStack undo, String algebraic) {
+		MoveList moves = new MoveList();
+		Board.getValidMovesForColor(position.getSide(), position, moves);
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			if (Move.toAlgebraic(move).equals(algebraic)) {
+				position.makeMove(move, position.getSide(), undo);
+				history.push(move, undo.getCapturedType() != -1,
+						position.getKey());
+				return;
+			}
+		}
+		throw new AssertionError("No move " + algebraic);
+	}
+
+	private static Search search(String fen, int depth) {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(fen, board);
+		Search search = new Search(new Position(board, side));
+		search.setMaxDepth(depth);
+		search.search(null);
+		return search;
+	}
+
+}
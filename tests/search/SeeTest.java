@@ -0,0 +1,69 @@
+package search;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import board.Board;
+import board.Fen;
+import board.Move;
+import board.MoveList;
+import board.Position;
+
+public class SeeTest {
+
+	private final See see = new See();
+
+	@Test
+	public void testFreePawn() {
+		assertEquals(100, see("4k3/8/8/4p3/8/8/8/4RK2 w - - 0 1", "e1e5"));
+	}
+
+	@Test
+	public void testDefendedPawn() {
+		assertEquals(100 - 900,
+				see("4k3/8/3p4/4p3/8/8/8/4QK2 w - - 0 1", "e1e5"));
+
+		// Taking with the pawn only trades pawns
+		assertEquals(0, see("4k3/8/3p4/4p3/3P4/8/8/5K2 w - - 0 1", "d4e5"));
+	}
+
+	@Test
+	public void testPieceBehind() {
+		// The rook on e1 takes back once the one on e2 is gone
+		assertEquals(100,
+				see("4r1k1/8/8/4p3/8/8/4R3/4R1K1 w - - 0 1", "e2e5"));
+		assertEquals(100 - 500,
+				see("4r1k1/8/8/4p3/8/8/4R3/6K1 w - - 0 1", "e2e5"));
+	}
+
+	@Test
+	public void testLeastValuableFirst() {
+		// Black takes back with the pawn, taking with the queen first would
+		// lose it to the rook
+		assertEquals(0, see("3qk3/8/2p5/3n4/8/4N3/3R4/4K3 w - - 0 1", "e3d5"));
+	}
+
+	@Test
+	public void testEnPassantAndPromotion() {
+		assertEquals(100, see("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1", "d5e6"));
+		assertEquals(900 - 100, see("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b7b8q"));
+		assertEquals(-100, see("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1", "a7a8q"));
+	}
+
+	private int see(String fen, String algebraic) {
+		long[][] board = new long[2][7];
+		int side = Fen.parse(fen, board);
+		Position position = new Position(board, side);
+		MoveList moves = new MoveList();
+		Board.getValidMovesForColor(side, position, moves);
+
+		for (int i = 0; i < moves.size(); i++) {
+			if (Move.toAlgebraic(moves.get(i)).equals(algebraic)) {
+				return see.evaluate(position, moves.get(i));
+			}
+		}
+		throw new AssertionError("No move " + algebraic);
+	}
+
+}
@@ -0,0 +1,106 @@
+package search;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TranspositionTableTest {
+
+	@Test
+	public void testStoreAndProbe() {
+		TranspositionTable table = new TranspositionTable(1);
+		assertEquals(1 << 20, table.size());
+
+		long key = 0x123456789ABCDEFL;
+		assertEquals(0, table.probe(key));
+
+		table.store(key, 0x1ABCD, -300, 7, TranspositionTable.BOUND_LOWER);
+		long data = table.probe(key);
+		assertEquals(0x1ABCD, TranspositionTable.getMove(data));
+		assertEquals(-300, TranspositionTable.getScore(data));
+		assertEquals(7, TranspositionTable.getDepth(data));
+		assertEquals(TranspositionTable.BOUND_LOWER,
+				TranspositionTable.getBound(data));
+
+		// Storing without a move keeps the old one
+		table.store(key, 0, 25, 8, TranspositionTable.BOUND_EXACT);
+		data = table.probe(key);
+		assertEquals(0x1ABCD, TranspositionTable.getMove(data));
+		assertEquals(25, TranspositionTable.getScore(data));
+
+		assertEquals(2, table.getHits());
+		assertEquals(1, table.getMisses());
+		assertEquals(0, table.getCollisions());
+
+		table.clear();
+		assertEquals(0, table.probe(key));
+	}
+
+	@Test
+	public void testReplacement() {
+		TranspositionTable table = new TranspositionTable(1);
+		long buckets = table.size() / 64;
+
+		// Five keys in the same bucket, the shallowest has to go
+		for (int i = 0; i < 4; i++) {
+			table.store(i * buckets, 1, 0, 10 + i,
+					TranspositionTable.BOUND_EXACT);
+		}
+		table.store(4 * buckets, 1, 0, 20, TranspositionTable.BOUND_EXACT);
+		assertEquals(1, table.getCollisions());
+		assertEquals(0, table.probe(0));
+		for (int i = 1; i < 5; i++) {
+			assertTrue(table.probe(i * buckets) != 0);
+		}
+
+		// Deep entries from an old search are replaced before new ones
+		table.newSearch();
+		table.store(5 * buckets, 1, 0, 5, TranspositionTable.BOUND_EXACT);
+		table.store(6 * buckets, 1, 0, 5, TranspositionTable.BOUND_EXACT);
+		assertTrue(table.probe(5 * buckets) != 0);
+		assertTrue(table.probe(6 * buckets) != 0);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final TranspositionTable table = new TranspositionTable(1);
+		final long[] errors = new long[4];
+		Thread[] threads = new Thread[errors.length];
+
+		// Few keys for many threads so they keep writing over each other
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				public void run() {
+					Random random = new Random(id);
+					for (int i = 0; i < 1000000; i++) {
+						long key = random.nextInt(4096) * 0x9E3779B97F4A7C15L;
+						long data = table.probe(key);
+						if (data != 0
+								&& TranspositionTable.getMove(data) != getMove(key)) {
+							errors[id]++;
+						}
+						table.store(key, getMove(key), id, random.nextInt(64),
+								TranspositionTable.BOUND_EXACT);
+					}
+				}
+			};
+			threads[t].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (long e : errors) {
+			assertEquals(0, e);
+		}
+		assertTrue(table.getHits() > 0);
+	}
+
+	private static int getMove(long key) {
+		return (int) (key >>> 40) & 0x1FFFF | 1;
+	}
+
+}